@@ -5,7 +5,9 @@ import java.util.Map;
 import java.util.StringJoiner;
 
 import fr.pederobien.vocal.common.impl.VolumeResult;
+import fr.pederobien.vocal.server.impl.PlayerSpeakSample;
 import fr.pederobien.vocal.server.impl.SpeakBehavior;
+import fr.pederobien.vocal.server.impl.SpeakRoute;
 import fr.pederobien.vocal.server.interfaces.IVocalPlayer;
 import fr.pederobien.vocal.server.interfaces.IVocalServer;
 
@@ -16,6 +18,7 @@ public class VocalPlayerSpeakEvent extends ProjectVocalServerEvent {
 	private Map<IVocalPlayer, VolumeResult> volumes;
 	private byte[] data;
 	private boolean isMono, isEncoded;
+	private int sequence, timestamp;
 
 	/**
 	 * Creates an event thrown when a player is speaking. The list of players contains a copy of registered players on the server.
@@ -35,6 +38,8 @@ public class VocalPlayerSpeakEvent extends ProjectVocalServerEvent {
 		this.data = data;
 		this.isMono = isMono;
 		this.isEncoded = isEncoded;
+		this.sequence = PlayerSpeakSample.nextSequence(transmitter);
+		this.timestamp = PlayerSpeakSample.currentTime();
 
 		this.players = new HashMap<String, IVocalPlayer>();
 		volumes = new HashMap<IVocalPlayer, VolumeResult>();
@@ -49,6 +54,34 @@ public class VocalPlayerSpeakEvent extends ProjectVocalServerEvent {
 				.forEach(receiver -> volumes.put(receiver, new VolumeResult(1.0)));
 	}
 
+	/**
+	 * Creates an event thrown when a player is speaking. The players and the default volumes are those of a route previously computed
+	 * for the transmitter. Both maps are copies that can be modified by listeners. There is two possibilities for a player to not speak
+	 * to another one: </br>
+	 * - Removing the player from the {@link #getVolumes()} map.</br>
+	 * - Setting the associated {@link VolumeResult} to {@link VolumeResult#NONE}.</br>
+	 * 
+	 * @param server    The server involved in this event.
+	 * @param route     The route that contains the players that can hear the transmitter.
+	 * @param data      The bytes array that represents an audio sample.
+	 * @param isMono    True if the audio signal is a mono signal, false otherwise.
+	 * @param isEncoded True if the audio sample has been encoded, false otherwise.
+	 * @param sequence  The number of the sample in the samples sent by the transmitter.
+	 * @param timestamp The time, in milliseconds, at which the sample has been sent by the transmitter.
+	 */
+	public VocalPlayerSpeakEvent(IVocalServer server, SpeakRoute route, byte[] data, boolean isMono, boolean isEncoded, int sequence, int timestamp) {
+		this.server = server;
+		this.transmitter = route.getTransmitter();
+		this.data = data;
+		this.isMono = isMono;
+		this.isEncoded = isEncoded;
+		this.sequence = sequence;
+		this.timestamp = timestamp;
+
+		players = new HashMap<String, IVocalPlayer>(route.getPlayers());
+		volumes = new HashMap<IVocalPlayer, VolumeResult>(route.getVolumes());
+	}
+
 	/**
 	 * @return The server involved in this event.
 	 */
@@ -98,6 +131,20 @@ public class VocalPlayerSpeakEvent extends ProjectVocalServerEvent {
 		return isEncoded;
 	}
 
+	/**
+	 * @return The number of the sample in the samples sent by the transmitter.
+	 */
+	public int getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return The time, in milliseconds, at which the sample has been sent by the transmitter.
+	 */
+	public int getTimestamp() {
+		return timestamp;
+	}
+
 	@Override
 	public String toString() {
 		StringJoiner joiner = new StringJoiner(", ", "{", "}");
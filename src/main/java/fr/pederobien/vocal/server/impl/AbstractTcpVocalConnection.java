@@ -1,9 +1,8 @@
 package fr.pederobien.vocal.server.impl;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import fr.pederobien.communication.ResponseCallbackArgs;
@@ -17,76 +16,74 @@ import fr.pederobien.vocal.common.interfaces.IVocalMessage;
 import fr.pederobien.vocal.server.interfaces.IVocalServer;
 
 public class AbstractTcpVocalConnection extends AbstractVocalConnection {
+	private static final int HANDSHAKE_TIMEOUT = 5000;
+
+	private enum HandshakeState {
+		VERSIONS_REQUESTED, VERSION_REQUESTED, ESTABLISHED, FAILED
+	}
+
+	private AtomicReference<HandshakeState> handshake;
 
 	public AbstractTcpVocalConnection(IVocalServer server, ITcpConnection connection) {
 		super(server, connection);
 	}
 
 	/**
-	 * @return true if a common version of the communication protocol has been found, false otherwise.
+	 * Starts the negotiation of the communication protocol version with the remote. This method does not block, the returned future
+	 * is completed once the remote has answered to both requests or when one request has not been answered in time. If no common
+	 * version has been found, the connection is disposed.
+	 * 
+	 * @return A future completed with true if a common version of the communication protocol has been found, false otherwise.
 	 */
-	protected boolean establishCommunicationProtocolVersion() {
-		Lock lock = new ReentrantLock(true);
-		Condition received = lock.newCondition();
+	protected CompletableFuture<Boolean> establishCommunicationProtocolVersion() {
+		CompletableFuture<Boolean> future = new CompletableFuture<Boolean>();
+		handshake = new AtomicReference<HandshakeState>(HandshakeState.VERSIONS_REQUESTED);
 
 		setVersion(-1.0f);
-		getCommunicationProtocolVersion(lock, received);
+		getCommunicationProtocolVersion(future);
 
-		lock.lock();
-		try {
-			if (!received.await(5000, TimeUnit.MILLISECONDS) || getVersion() == -1) {
+		// Safety net in case the remote never answers.
+		return future.completeOnTimeout(false, HANDSHAKE_TIMEOUT, TimeUnit.MILLISECONDS).thenApply(result -> {
+			if (!result || getVersion() == -1) {
+				handshake.set(HandshakeState.FAILED);
 				getConnection().dispose();
 				return false;
 			}
-		} catch (InterruptedException e) {
-			// Do nothing
-		} finally {
-			lock.unlock();
-		}
-
-		return true;
+			return true;
+		});
 	}
 
-	private void getCommunicationProtocolVersion(Lock lock, Condition received) {
+	private void getCommunicationProtocolVersion(CompletableFuture<Boolean> future) {
 		// Step 1: Asking the latest version of the communication protocol supported by the remote
 		send(getServer().getRequestManager().getCommunicationProtocolVersion(), args -> {
 			if (args.isTimeout()) {
 				EventManager.callEvent(new LogEvent("Client did not answer to GET_COMMUNICATION_PROTOCOL_VERSIONS in time, disposing connection ..."));
 				// No need to wait more
-				exit(lock, received);
-			} else {
+				future.complete(false);
+			} else if (handshake.compareAndSet(HandshakeState.VERSIONS_REQUESTED, HandshakeState.VERSION_REQUESTED)) {
 				GetCommunicationProtocolVersionsV10 message = (GetCommunicationProtocolVersionsV10) VocalServerMessageFactory.parse(args.getResponse().getBytes());
-				setCommunicationProtocolVersion(lock, received, findHighestVersion(message.getVersions()));
+				setCommunicationProtocolVersion(future, findHighestVersion(message.getVersions()));
 			}
 		});
 	}
 
-	private void setCommunicationProtocolVersion(Lock lock, Condition received, float version) {
+	private void setCommunicationProtocolVersion(CompletableFuture<Boolean> future, float version) {
 		// Step 2: Setting a specific version of the communication protocol to use for the client-server communication.
 		send(getServer().getRequestManager().setCommunicationProtocolVersion(version), args -> {
 			if (!args.isTimeout()) {
 				SetCommunicationProtocolVersionV10 message = (SetCommunicationProtocolVersionV10) VocalServerMessageFactory.parse(args.getResponse().getBytes());
-				if (message.getVersion() == version)
+				if (message.getVersion() == version && handshake.compareAndSet(HandshakeState.VERSION_REQUESTED, HandshakeState.ESTABLISHED))
 					setVersion(version);
 			} else
 				EventManager.callEvent(new LogEvent("Client did not answer to SET_COMMUNICATION_PROTOCOL_VERSION in time, disposing connection ..."));
 
-			exit(lock, received);
+			future.complete(getVersion() != -1);
 		});
 	}
 
-	private void exit(Lock lock, Condition received) {
-		lock.lock();
-		try {
-			received.signal();
-		} finally {
-			lock.unlock();
-		}
-	}
-
 	private float findHighestVersion(float[] versions) {
 		float version = -1;
-		for (int i = versions.length - 1; 0 < i; i--) {
+		for (int i = versions.length - 1; i >= 0; i--) {
 			if (getServer().getRequestManager().isSupported(versions[i])) {
 				version = versions[i];
 				break;
@@ -128,4 +125,17 @@ public class AbstractTcpVocalConnection extends AbstractVocalConnection {
 
 		((ITcpConnection) getConnection()).send(new VocalCallbackMessage(message, callback, timeout));
 	}
+
+	/**
+	 * Send a message to the remote. The bytes of a {@link VocalCallbackMessage} are generated when it is created, so the same message
+	 * can be sent to several remotes without generating its bytes again.
+	 * 
+	 * @param message The message to send to the remote.
+	 */
+	protected void send(VocalCallbackMessage message) {
+		if (message == null || getConnection() == null || getConnection().isDisposed())
+			return;
+
+		((ITcpConnection) getConnection()).send(message);
+	}
 }
@@ -3,12 +3,14 @@ package fr.pederobien.vocal.server.impl;
 import fr.pederobien.communication.event.DataReceivedEvent;
 import fr.pederobien.communication.interfaces.IConnection;
 import fr.pederobien.vocal.common.interfaces.IVocalMessage;
+import fr.pederobien.vocal.server.interfaces.IRequestManager;
 import fr.pederobien.vocal.server.interfaces.IVocalServer;
 
 public class AbstractVocalConnection {
 	private IVocalServer server;
 	private IConnection connection;
-	private static float version;
+	private volatile float version;
+	private volatile IRequestManager requestManager;
 
 	/**
 	 * Creates a vocal connection in order to send or receive requests from the remote.
@@ -36,12 +38,22 @@ public class AbstractVocalConnection {
 	}
 
 	/**
-	 * Set the communication protocol version.
+	 * Set the communication protocol version. The requests manager associated to this version is resolved once so that requests sent
+	 * to the remote are created without looking for the manager.
 	 * 
 	 * @param version The new version of the communication protocol.
 	 */
 	protected void setVersion(float version) {
-		AbstractVocalConnection.version = version;
+		requestManager = server.getRequestManager().getRequestManager(version).orElse(null);
+		this.version = version;
+	}
+
+	/**
+	 * @return The requests manager associated to the negotiated version of the communication protocol, null if no version has been
+	 *         negotiated.
+	 */
+	protected IRequestManager getRequestManager() {
+		return requestManager;
 	}
 
 	/**
@@ -0,0 +1,24 @@
+package fr.pederobien.vocal.server.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import fr.pederobien.communication.interfaces.IAnswersExtractor;
+
+public class AudioDatagramExtractor implements IAnswersExtractor {
+
+	/**
+	 * Creates an extractor that considers each received datagram as a single message, whatever its layout. Audio datagrams of the
+	 * version 2.0 of the communication protocol are not framed as vocal messages and would be dropped by a vocal message extractor.
+	 */
+	public AudioDatagramExtractor() {
+	}
+
+	@Override
+	public Map<Integer, byte[]> extract(byte[] received) {
+		Map<Integer, byte[]> messages = new HashMap<Integer, byte[]>();
+		if (received != null && received.length > 0)
+			messages.put(0, received);
+		return messages;
+	}
+}
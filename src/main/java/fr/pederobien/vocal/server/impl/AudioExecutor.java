@@ -0,0 +1,89 @@
+package fr.pederobien.vocal.server.impl;
+
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Consumer;
+
+public class AudioExecutor {
+	/**
+	 * The default number of receivers under which an audio sample is sent sequentially.
+	 */
+	public static final int DEFAULT_SEQUENTIAL_THRESHOLD = 8;
+
+	private ForkJoinPool pool;
+	private int sequentialThreshold;
+
+	/**
+	 * Creates an executor dedicated to the audio fan-out, isolated from the common pool of the JVM.
+	 * 
+	 * @param name        The name of the server, used to name the threads of this executor.
+	 * @param parallelism The number of threads used to send an audio sample to several receivers.
+	 */
+	public AudioExecutor(String name, int parallelism) {
+		pool = new ForkJoinPool(parallelism, p -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+			thread.setName(String.format("%s_AudioFanOut_%s", name, thread.getPoolIndex()));
+			thread.setDaemon(true);
+			return thread;
+		}, null, false);
+		sequentialThreshold = DEFAULT_SEQUENTIAL_THRESHOLD;
+	}
+
+	/**
+	 * @return The number of threads used to send an audio sample to several receivers.
+	 */
+	public int getParallelism() {
+		return pool.getParallelism();
+	}
+
+	/**
+	 * @return The number of receivers under which an audio sample is sent sequentially.
+	 */
+	public int getSequentialThreshold() {
+		return sequentialThreshold;
+	}
+
+	/**
+	 * Set the number of receivers under which an audio sample is sent sequentially, from the thread that received the sample.
+	 * 
+	 * @param sequentialThreshold The new threshold.
+	 */
+	public void setSequentialThreshold(int sequentialThreshold) {
+		this.sequentialThreshold = sequentialThreshold;
+	}
+
+	/**
+	 * Executes the given task asynchronously on a thread of this executor.
+	 * 
+	 * @param task The task to execute.
+	 */
+	public void execute(Runnable task) {
+		pool.execute(task);
+	}
+
+	/**
+	 * Performs the given action for each element of the collection and waits until every action has been done. If the collection is
+	 * small, the actions are done sequentially by the calling thread, otherwise they are done in parallel by the threads of this
+	 * executor.
+	 * 
+	 * @param elements The elements on which the action is performed.
+	 * @param action   The action to perform.
+	 */
+	public <T> void forEach(Collection<T> elements, Consumer<T> action) {
+		if (elements.size() < sequentialThreshold || pool.getParallelism() == 1) {
+			for (T element : elements)
+				action.accept(element);
+			return;
+		}
+
+		pool.submit(() -> elements.parallelStream().forEach(action)).join();
+	}
+
+	/**
+	 * Stops the threads of this executor once the tasks already submitted have been executed. New tasks are rejected.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+}
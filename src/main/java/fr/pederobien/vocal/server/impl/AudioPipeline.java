@@ -0,0 +1,177 @@
+package fr.pederobien.vocal.server.impl;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+import fr.pederobien.utils.event.EventManager;
+import fr.pederobien.utils.event.LogEvent;
+
+public class AudioPipeline {
+	/**
+	 * The default number of datagrams that can wait between the ingress and the routing stages of one lane.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * The maximum time, in nanoseconds, a routing thread waits before checking its lane again.
+	 */
+	private static final long MAX_PARK_TIME = 1000000;
+
+	private String name;
+	private int capacity;
+	private BiConsumer<byte[], InetSocketAddress> router;
+	private Map<Thread, Lane> lanes;
+	private AtomicBoolean isOpened;
+	private AtomicLong processed, dropped;
+
+	/**
+	 * Creates a pipeline that decouples the reception of audio samples from their routing. Each thread that receives datagrams gets
+	 * its own lane: a bounded single producer, single consumer ring buffer drained by a dedicated routing thread. A transmitter always
+	 * sends its datagrams to the same receiving thread, so its samples are routed in order. When a lane is full, the received datagram
+	 * is dropped so that the receiving thread is never blocked by a slow routing.
+	 * 
+	 * @param name     The server name, used to name the routing threads.
+	 * @param capacity The number of datagrams that can wait in one lane.
+	 * @param router   The code to run on the routing thread for each datagram.
+	 */
+	public AudioPipeline(String name, int capacity, BiConsumer<byte[], InetSocketAddress> router) {
+		this.name = name;
+		this.capacity = capacity;
+		this.router = router;
+
+		lanes = new ConcurrentHashMap<Thread, Lane>();
+		isOpened = new AtomicBoolean(false);
+		processed = new AtomicLong(0);
+		dropped = new AtomicLong(0);
+	}
+
+	/**
+	 * Allows datagrams to be submitted to this pipeline.
+	 */
+	public void open() {
+		isOpened.set(true);
+	}
+
+	/**
+	 * Stops every routing thread. Datagrams waiting in a lane are dropped.
+	 */
+	public void close() {
+		if (!isOpened.compareAndSet(true, false))
+			return;
+
+		for (Lane lane : lanes.values())
+			lane.stop();
+		lanes.clear();
+	}
+
+	/**
+	 * Submits a received datagram to the lane of the calling thread. This method never blocks.
+	 * 
+	 * @param buffer  The bytes of the datagram.
+	 * @param address The address of the remote.
+	 */
+	public void submit(byte[] buffer, InetSocketAddress address) {
+		if (!isOpened.get())
+			return;
+
+		Lane lane = lanes.computeIfAbsent(Thread.currentThread(), thread -> new Lane(lanes.size()));
+		if (!lane.offer(new Datagram(buffer, address)))
+			dropped.incrementAndGet();
+	}
+
+	/**
+	 * @return The number of lanes, that is the number of threads that have submitted datagrams.
+	 */
+	public int getLaneCount() {
+		return lanes.size();
+	}
+
+	/**
+	 * @return The number of datagrams waiting to be routed.
+	 */
+	public int getDepth() {
+		int depth = 0;
+		for (Lane lane : lanes.values())
+			depth += lane.buffer.size();
+		return depth;
+	}
+
+	/**
+	 * @return The number of datagrams routed since this pipeline has been created.
+	 */
+	public long getProcessedCount() {
+		return processed.get();
+	}
+
+	/**
+	 * @return The number of datagrams dropped because a lane was full.
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	private class Lane {
+		private SpscRingBuffer<Datagram> buffer;
+		private Thread consumer;
+		private volatile boolean isWaiting, isStopped;
+
+		private Lane(int index) {
+			buffer = new SpscRingBuffer<Datagram>(capacity);
+			consumer = new Thread(() -> drain(), String.format("%s_AudioRouter_%s", name, index));
+			consumer.setDaemon(true);
+			consumer.start();
+		}
+
+		private boolean offer(Datagram datagram) {
+			if (!buffer.offer(datagram))
+				return false;
+
+			if (isWaiting)
+				LockSupport.unpark(consumer);
+			return true;
+		}
+
+		private void stop() {
+			isStopped = true;
+			LockSupport.unpark(consumer);
+		}
+
+		private void drain() {
+			while (!isStopped) {
+				Datagram datagram = buffer.poll();
+				if (datagram == null) {
+					isWaiting = true;
+
+					// Checking again in case a datagram has been offered before the flag was visible. The park is bounded so that a missed
+					// wakeup only delays the datagram instead of blocking the lane.
+					if (buffer.isEmpty() && !isStopped)
+						LockSupport.parkNanos(this, MAX_PARK_TIME);
+					isWaiting = false;
+					continue;
+				}
+
+				try {
+					router.accept(datagram.buffer, datagram.address);
+				} catch (RuntimeException e) {
+					EventManager.callEvent(new LogEvent("Error while routing an audio datagram: %s", e.getMessage()));
+				}
+				processed.incrementAndGet();
+			}
+		}
+	}
+
+	private static class Datagram {
+		private byte[] buffer;
+		private InetSocketAddress address;
+
+		private Datagram(byte[] buffer, InetSocketAddress address) {
+			this.buffer = buffer;
+			this.address = address;
+		}
+	}
+}
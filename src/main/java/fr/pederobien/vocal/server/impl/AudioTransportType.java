@@ -0,0 +1,42 @@
+package fr.pederobien.vocal.server.impl;
+
+import fr.pederobien.vocal.server.interfaces.IAudioTransport;
+
+public enum AudioTransportType {
+
+	/**
+	 * Enumeration to tell to the vocal server that audio samples are received and sent using the UDP server of the communication
+	 * library.
+	 */
+	UDP_SERVER,
+
+	/**
+	 * Enumeration to tell to the vocal server that audio samples are received and sent using a non-blocking datagram channel.
+	 */
+	NIO,
+
+	/**
+	 * Enumeration to tell to the vocal server that audio samples are received using one non-blocking datagram channel per processor,
+	 * all bound to the server port with SO_REUSEPORT. The audio samples of a transmitter are always received by the same channel.
+	 */
+	NIO_REUSEPORT;
+
+	/**
+	 * Creates the audio transport associated to this enumeration field.
+	 * 
+	 * @param name The server name.
+	 * @param port The port number on which audio samples are received.
+	 * 
+	 * @return A new audio transport.
+	 */
+	public IAudioTransport create(String name, int port) {
+		switch (this) {
+		case NIO:
+			return new NioAudioTransport(name, port);
+		case NIO_REUSEPORT:
+			return new NioAudioTransport(name, port, NioAudioTransport.DEFAULT_BUFFER_SIZE, Runtime.getRuntime().availableProcessors());
+		default:
+			return new UdpServerAudioTransport(name, port);
+		}
+	}
+}
@@ -1,58 +1,70 @@
 package fr.pederobien.vocal.server.impl;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Stream;
 
+import fr.pederobien.communication.event.ConnectionLostEvent;
 import fr.pederobien.communication.event.NewTcpClientEvent;
+import fr.pederobien.communication.event.UnexpectedDataReceivedEvent;
+import fr.pederobien.communication.interfaces.IConnection;
 import fr.pederobien.communication.interfaces.ITcpConnection;
 import fr.pederobien.utils.event.EventHandler;
 import fr.pederobien.utils.event.EventManager;
 import fr.pederobien.utils.event.EventPriority;
 import fr.pederobien.utils.event.IEventListener;
 import fr.pederobien.vocal.server.event.VocalClientDisconnectPostEvent;
+import fr.pederobien.vocal.server.event.VocalPlayerNameChangePostEvent;
 import fr.pederobien.vocal.server.event.VocalServerClientAddPostEvent;
+import fr.pederobien.vocal.server.event.VocalServerClientJoinPostEvent;
+import fr.pederobien.vocal.server.event.VocalServerClientLeavePostEvent;
 import fr.pederobien.vocal.server.event.VocalServerClientRemovePostEvent;
+import fr.pederobien.vocal.server.interfaces.IVocalPlayer;
 
-public class ClientList implements IEventListener {
+public class ClientList implements Iterable<PlayerVocalClient>, IEventListener {
 	private VocalServer server;
 	private List<PlayerVocalClient> clients;
-	private Lock lock;
+	private Map<IConnection, PlayerVocalClient> connections;
+	private Map<String, PlayerVocalClient> names;
 
 	/**
 	 * Creates a clients list associated to a vocal server. A client is an intermediate object used to gather information about the
-	 * player from the game.
+	 * player from the game. Clients are indexed by TCP connection and by player name. Reading this list never locks,
+	 * iterations are done on a snapshot of the clients.
 	 * 
 	 * @param server The server associated to this clients list.
 	 */
 	public ClientList(VocalServer server) {
 		this.server = server;
-		clients = new ArrayList<PlayerVocalClient>();
-		lock = new ReentrantLock(true);
+		clients = new CopyOnWriteArrayList<PlayerVocalClient>();
+		connections = new ConcurrentHashMap<IConnection, PlayerVocalClient>();
+		names = new ConcurrentHashMap<String, PlayerVocalClient>();
 
 		EventManager.registerListener(this);
 	}
 
+	@Override
+	public Iterator<PlayerVocalClient> iterator() {
+		return clients.iterator();
+	}
+
 	/**
 	 * @return A copy of the the underlying list that stores clients.
 	 */
 	public List<PlayerVocalClient> toList() {
-		lock.lock();
-		try {
-			return new ArrayList<PlayerVocalClient>(clients);
-		} finally {
-			lock.unlock();
-		}
+		return new ArrayList<PlayerVocalClient>(clients);
 	}
 
 	/**
-	 * @return a sequential {@code Stream} over the elements in this collection.
+	 * @return a sequential {@code Stream} over a snapshot of the elements in this collection.
 	 */
 	public Stream<PlayerVocalClient> stream() {
-		return toList().stream();
+		return clients.stream();
 	}
 
 	/**
@@ -63,27 +75,39 @@ public class ClientList implements IEventListener {
 	 * @return An optional that contains the client associated to the specified name if registered, an empty optional otherwise.
 	 */
 	public Optional<PlayerVocalClient> get(String name) {
-		lock.lock();
-		try {
-			for (PlayerVocalClient client : clients)
-				if (client.getPlayer() != null && client.getPlayer().getName().equals(name))
-					return Optional.of(client);
+		PlayerVocalClient client = names.get(name);
+		if (client == null || client.getPlayer() == null || !client.getPlayer().getName().equals(name))
 			return Optional.empty();
-		} finally {
-			lock.unlock();
-		}
+		return Optional.of(client);
+	}
+
+	/**
+	 * Get the client associated to the given TCP connection.
+	 * 
+	 * @param connection The connection with the remote.
+	 * 
+	 * @return An optional that contains the client associated to the connection if registered, an empty optional otherwise.
+	 */
+	public Optional<PlayerVocalClient> get(IConnection connection) {
+		return Optional.ofNullable(connections.get(connection));
+	}
+
+	/**
+	 * Thread safe operation to remove the given client from this list without disconnecting its player. For internal use only.
+	 * 
+	 * @param client The client to remove.
+	 */
+	public void remove(PlayerVocalClient client) {
+		removeClient(client);
 	}
 
 	/**
 	 * Thread safe operation to remove all clients from this list.
 	 */
 	public void clear() {
-		lock.lock();
-		try {
-			clients.clear();
-		} finally {
-			lock.unlock();
-		}
+		clients.clear();
+		connections.clear();
+		names.clear();
 	}
 
 	@EventHandler(priority = EventPriority.LOWEST)
@@ -94,6 +118,50 @@ public class ClientList implements IEventListener {
 		createClient(event.getConnection());
 	}
 
+	@EventHandler(priority = EventPriority.LOWEST)
+	private void onUnexpectedDataReceived(UnexpectedDataReceivedEvent event) {
+		PlayerVocalClient client = connections.get(event.getConnection());
+		if (client != null)
+			client.onUnexpectedDataReceived(event);
+	}
+
+	@EventHandler(priority = EventPriority.LOWEST)
+	private void onConnectionLost(ConnectionLostEvent event) {
+		PlayerVocalClient client = connections.get(event.getConnection());
+		if (client != null)
+			client.onConnectionLost(event);
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onClientJoin(VocalServerClientJoinPostEvent event) {
+		if (!event.getServer().equals(server))
+			return;
+
+		IVocalPlayer player = event.getClient().getPlayer();
+		names.put(player.getName(), event.getClient());
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onPlayerNameChange(VocalPlayerNameChangePostEvent event) {
+		if (!event.getPlayer().getServer().equals(server))
+			return;
+
+		PlayerVocalClient client = names.get(event.getOldName());
+		if (client == null || client.getPlayer() != event.getPlayer())
+			return;
+
+		names.remove(event.getOldName(), client);
+		names.put(event.getPlayer().getName(), client);
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onClientLeave(VocalServerClientLeavePostEvent event) {
+		if (!event.getServer().equals(server))
+			return;
+
+		unindex(event.getClient());
+	}
+
 	@EventHandler
 	private void onClientDisconnect(VocalClientDisconnectPostEvent event) {
 		if (!event.getClient().getServer().equals(server))
@@ -102,17 +170,22 @@ public class ClientList implements IEventListener {
 		removeClient(event.getClient());
 	}
 
-	private PlayerVocalClient createClient(ITcpConnection connection) {
-		lock.lock();
-		try {
-			PlayerVocalClient client = new PlayerVocalClient(server, connection);
-			clients.add(client);
-			client.setConnection(connection);
-			EventManager.callEvent(new VocalServerClientAddPostEvent(server, client, connection.getAddress()));
-			return client;
-		} finally {
-			lock.unlock();
-		}
+	/**
+	 * Thread safe operation to create a client for a new connection and to add it to this list. For internal use only.
+	 * 
+	 * @param connection The TCP connection with the remote.
+	 * 
+	 * @return The created client.
+	 */
+	public PlayerVocalClient createClient(ITcpConnection connection) {
+		PlayerVocalClient client = new PlayerVocalClient(server, connection);
+		connections.put(connection, client);
+		clients.add(client);
+
+		// The protocol version negotiation does not block, the client list remains available for other connections.
+		client.setConnection(connection);
+		EventManager.callEvent(new VocalServerClientAddPostEvent(server, client, connection.getAddress()));
+		return client;
 	}
 
 	/**
@@ -121,15 +194,23 @@ public class ClientList implements IEventListener {
 	 * @param client The client to remove.
 	 */
 	private void removeClient(PlayerVocalClient client) {
-		lock.lock();
-		boolean removed = false;
-		try {
-			removed = clients.remove(client);
-		} finally {
-			lock.unlock();
-		}
-
-		if (removed)
+		connections.remove(client.getConnection(), client);
+		unindex(client);
+
+		if (clients.remove(client))
 			EventManager.callEvent(new VocalServerClientRemovePostEvent(server, client));
 	}
+
+	/**
+	 * Removes the given client from the name index.
+	 * 
+	 * @param client The client to remove.
+	 */
+	private void unindex(PlayerVocalClient client) {
+		IVocalPlayer player = client.getPlayer();
+		if (player == null)
+			return;
+
+		names.remove(player.getName(), client);
+	}
 }
@@ -0,0 +1,187 @@
+package fr.pederobien.vocal.server.impl;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class MuteByMatrix {
+	/**
+	 * The highest identifier of a player. Identifiers are sent as unsigned shorts whose the value 0xFFFF is reserved.
+	 */
+	public static final int MAX_ID = 0xFFFE;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private volatile AtomicLongArray[] rows;
+	private BitSet identifiers;
+	private Lock lock;
+
+	/**
+	 * Creates a matrix that stores, for each player, the players for which he is mute. Each player is identified by a compact
+	 * identifier so that a mute by status is a single bit of the row associated to the target player. Reading a status never locks,
+	 * whereas modifications are done under a lock.
+	 */
+	public MuteByMatrix() {
+		rows = createRows(INITIAL_CAPACITY);
+		identifiers = new BitSet();
+		lock = new ReentrantLock(true);
+	}
+
+	/**
+	 * Thread safe operation to reserve the lowest available identifier. The mute by statuses associated to the identifier are reset.
+	 *
+	 * @return The identifier of the new player.
+	 * 
+	 * @throws IllegalStateException If every identifier up to {@link #MAX_ID} is already used.
+	 */
+	public int register() {
+		lock.lock();
+		try {
+			int id = identifiers.nextClearBit(0);
+			if (id > MAX_ID)
+				throw new IllegalStateException("No player identifier is available");
+
+			identifiers.set(id);
+
+			if (id >= rows.length)
+				rows = resize(Math.max(rows.length * 2, id + 1));
+
+			// Clearing the row and the column that could have been used by a previous player.
+			for (int i = 0; i < rows[id].length(); i++)
+				rows[id].set(i, 0);
+			for (AtomicLongArray row : rows)
+				update(row, id, false);
+
+			return id;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Thread safe operation to release the given identifier in order to be reused by another player. When the highest identifiers are
+	 * released, the matrix is shrunk so that its size depends on the identifiers in use and not on the highest identifier ever used.
+	 *
+	 * @param id The identifier to release.
+	 */
+	public void unregister(int id) {
+		if (id < 0)
+			return;
+
+		lock.lock();
+		try {
+			identifiers.clear(id);
+
+			// Shrinking only when a quarter of the capacity is used so that players joining and leaving do not resize the matrix each time.
+			int capacity = INITIAL_CAPACITY;
+			while (capacity < identifiers.length())
+				capacity *= 2;
+
+			if (capacity * 4 <= rows.length)
+				rows = resize(capacity);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The number of rows, and of columns, of this matrix.
+	 */
+	public int getCapacity() {
+		return rows.length;
+	}
+
+	/**
+	 * Indicates if a target player is mute for a source player.
+	 *
+	 * @param target The identifier of the target player.
+	 * @param source The identifier of the source player.
+	 *
+	 * @return True if the target player is mute for the source player, false otherwise.
+	 */
+	public boolean get(int target, int source) {
+		AtomicLongArray[] rows = this.rows;
+		if (target < 0 || source < 0 || target >= rows.length || source >= rows.length)
+			return false;
+
+		return (rows[target].get(source >>> 6) & (1L << source)) != 0;
+	}
+
+	/**
+	 * Get the identifiers of the source players for which a target player is mute.
+	 *
+	 * @param target The identifier of the target player.
+	 *
+	 * @return An array that contains the identifiers of the source players, in ascending order.
+	 */
+	public int[] getSources(int target) {
+		AtomicLongArray[] rows = this.rows;
+		if (target < 0 || target >= rows.length)
+			return new int[0];
+
+		AtomicLongArray row = rows[target];
+		int[] sources = new int[0];
+		int count = 0;
+		for (int i = 0; i < row.length(); i++) {
+			long word = row.get(i);
+			while (word != 0) {
+				if (count == sources.length)
+					sources = Arrays.copyOf(sources, Math.max(4, count * 2));
+
+				sources[count++] = (i << 6) + Long.numberOfTrailingZeros(word);
+
+				// Clearing the lowest set bit.
+				word &= word - 1;
+			}
+		}
+		return Arrays.copyOf(sources, count);
+	}
+
+	/**
+	 * Thread safe operation to set if a target player is mute for a source player.
+	 *
+	 * @param target The identifier of the target player.
+	 * @param source The identifier of the source player.
+	 * @param isMute True if the target player is mute for the source player, false otherwise.
+	 *
+	 * @return The old mute by status.
+	 */
+	public boolean set(int target, int source, boolean isMute) {
+		if (target < 0 || source < 0)
+			return false;
+
+		lock.lock();
+		try {
+			return update(rows[target], source, isMute);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean update(AtomicLongArray row, int column, boolean value) {
+		int index = column >>> 6;
+		long mask = 1L << column;
+		long old;
+		do {
+			old = row.get(index);
+		} while (!row.compareAndSet(index, old, value ? old | mask : old & ~mask));
+		return (old & mask) != 0;
+	}
+
+	private AtomicLongArray[] resize(int capacity) {
+		AtomicLongArray[] resized = createRows(capacity);
+		for (int i = 0; i < Math.min(rows.length, capacity); i++)
+			for (int j = 0; j < Math.min(rows[i].length(), resized[i].length()); j++)
+				resized[i].set(j, rows[i].get(j));
+		return resized;
+	}
+
+	private AtomicLongArray[] createRows(int capacity) {
+		AtomicLongArray[] rows = new AtomicLongArray[capacity];
+		for (int i = 0; i < capacity; i++)
+			rows[i] = new AtomicLongArray((capacity + 63) >>> 6);
+		return rows;
+	}
+}
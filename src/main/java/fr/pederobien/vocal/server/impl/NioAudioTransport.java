@@ -0,0 +1,234 @@
+package fr.pederobien.vocal.server.impl;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import fr.pederobien.utils.event.EventManager;
+import fr.pederobien.utils.event.LogEvent;
+import fr.pederobien.vocal.server.interfaces.IAudioTransport;
+
+public class NioAudioTransport implements IAudioTransport {
+	/**
+	 * The default size, in bytes, of the buffers used to receive datagrams.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 2048;
+
+	private String name;
+	private int port, bufferSize, shardCount;
+	private AtomicBoolean isOpened;
+	private AtomicLong received, sent, dropped;
+	private volatile Shard[] shards;
+
+	/**
+	 * Creates an audio transport based on non-blocking datagram channels. Each channel receives datagrams in its own direct buffer so
+	 * that the only copy of a received datagram is the bytes array given to the receiver. When several shards are requested, as many
+	 * channels are bound to the same port using SO_REUSEPORT, each one with its own receiving thread. The system dispatches the datagrams of a remote always
+	 * to the same channel, so the audio samples of a transmitter are handled in order by one thread.
+	 * 
+	 * @param name       The server name.
+	 * @param port       The port number on which audio samples are received.
+	 * @param bufferSize The size, in bytes, of the buffers used to receive datagrams, longer datagrams are truncated.
+	 * @param shardCount The number of channels bound to the port, 1 to not use SO_REUSEPORT.
+	 */
+	public NioAudioTransport(String name, int port, int bufferSize, int shardCount) {
+		this.name = name;
+		this.port = port;
+		this.bufferSize = bufferSize;
+		this.shardCount = Math.max(1, shardCount);
+
+		isOpened = new AtomicBoolean(false);
+		received = new AtomicLong(0);
+		sent = new AtomicLong(0);
+		dropped = new AtomicLong(0);
+	}
+
+	/**
+	 * Creates an audio transport based on a single non-blocking datagram channel with buffers of {@link #DEFAULT_BUFFER_SIZE} bytes.
+	 * 
+	 * @param name The server name.
+	 * @param port The port number on which audio samples are received.
+	 */
+	public NioAudioTransport(String name, int port) {
+		this(name, port, DEFAULT_BUFFER_SIZE, 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @throws IllegalStateException If a channel cannot be bound to the port.
+	 */
+	@Override
+	public void open(BiConsumer<byte[], InetSocketAddress> receiver) {
+		if (!isOpened.compareAndSet(false, true))
+			return;
+
+		int count = shardCount;
+		if (count > 1 && !isReusePortSupported()) {
+			EventManager.callEvent(new LogEvent("SO_REUSEPORT is not supported, audio samples are received on a single channel"));
+			count = 1;
+		}
+
+		Shard[] shards = new Shard[count];
+		try {
+			for (int i = 0; i < count; i++)
+				shards[i] = new Shard(count > 1);
+		} catch (IOException e) {
+			this.shards = shards;
+			close();
+			throw new IllegalStateException(String.format("Cannot open the audio channel on port %s", port), e);
+		}
+
+		this.shards = shards;
+		for (int i = 0; i < count; i++)
+			shards[i].start(receiver, i);
+	}
+
+	@Override
+	public void close() {
+		if (!isOpened.compareAndSet(true, false))
+			return;
+
+		Shard[] shards = this.shards;
+		if (shards == null)
+			return;
+
+		for (Shard shard : shards)
+			if (shard != null)
+				shard.close();
+	}
+
+	@Override
+	public boolean isOpened() {
+		return isOpened.get();
+	}
+
+	@Override
+	public void send(byte[] bytes, InetSocketAddress address) {
+		Shard[] shards = this.shards;
+		if (bytes == null || shards == null)
+			return;
+
+		// Any channel can send to any remote, the same channel is used for a remote so that its datagrams are sent in order.
+		Shard shard = shards[Math.floorMod(address.hashCode(), shards.length)];
+		DatagramChannel channel = shard == null ? null : shard.channel;
+		if (channel == null || !channel.isOpen())
+			return;
+
+		try {
+			// The channel is not blocking, the datagram is dropped if the socket buffer is full. The JDK copies the bytes in a direct
+			// buffer of its own, reused by the sending thread.
+			if (channel.send(ByteBuffer.wrap(bytes), address) == 0)
+				dropped.incrementAndGet();
+			else
+				sent.incrementAndGet();
+		} catch (IOException e) {
+			dropped.incrementAndGet();
+		}
+	}
+
+	/**
+	 * @return The number of channels that receive audio samples, 0 if this transport is not opened.
+	 */
+	public int getShardCount() {
+		Shard[] shards = this.shards;
+		return isOpened.get() && shards != null ? shards.length : 0;
+	}
+
+	/**
+	 * @return The number of datagrams received since this transport has been created.
+	 */
+	public long getReceivedCount() {
+		return received.get();
+	}
+
+	/**
+	 * @return The number of datagrams sent since this transport has been created.
+	 */
+	public long getSentCount() {
+		return sent.get();
+	}
+
+	/**
+	 * @return The number of datagrams that could not be sent since this transport has been created.
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	private boolean isReusePortSupported() {
+		try (DatagramChannel channel = DatagramChannel.open()) {
+			return channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private void receive(DatagramChannel channel, Selector selector, BiConsumer<byte[], InetSocketAddress> receiver) {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+		try {
+			while (isOpened.get()) {
+				if (selector.select() == 0)
+					continue;
+				selector.selectedKeys().clear();
+
+				// Reading every pending datagram before waiting again.
+				SocketAddress address;
+				while ((address = channel.receive(buffer.clear())) != null) {
+					buffer.flip();
+					byte[] bytes = new byte[buffer.remaining()];
+					buffer.get(bytes);
+					received.incrementAndGet();
+
+					try {
+						receiver.accept(bytes, (InetSocketAddress) address);
+					} catch (RuntimeException e) {
+						EventManager.callEvent(new LogEvent("Error while handling an audio datagram: %s", e.getMessage()));
+					}
+				}
+			}
+		} catch (IOException | ClosedSelectorException e) {
+			if (isOpened.get())
+				EventManager.callEvent(new LogEvent("Audio channel closed unexpectedly: %s", e.getMessage()));
+		}
+	}
+
+	private class Shard {
+		private DatagramChannel channel;
+		private Selector selector;
+
+		private Shard(boolean reusePort) throws IOException {
+			selector = Selector.open();
+			channel = DatagramChannel.open();
+			channel.configureBlocking(false);
+			if (reusePort)
+				channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+			channel.bind(new InetSocketAddress(port));
+			channel.register(selector, SelectionKey.OP_READ);
+		}
+
+		private void start(BiConsumer<byte[], InetSocketAddress> receiver, int index) {
+			Thread thread = new Thread(() -> receive(channel, selector, receiver), String.format("%s_AudioReceiver_%s", name, index));
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		private void close() {
+			try {
+				selector.close();
+				channel.close();
+			} catch (IOException e) {
+				// Do nothing
+			}
+		}
+	}
+}
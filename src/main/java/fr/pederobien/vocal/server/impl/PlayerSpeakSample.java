@@ -0,0 +1,190 @@
+package fr.pederobien.vocal.server.impl;
+
+import java.time.LocalTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fr.pederobien.vocal.common.impl.VolumeResult;
+import fr.pederobien.vocal.server.interfaces.IPlayerSpeakFrame;
+import fr.pederobien.vocal.server.interfaces.IRequestManager;
+import fr.pederobien.vocal.server.interfaces.IVocalPlayer;
+import fr.pederobien.vocal.server.interfaces.IVocalServer;
+
+public class PlayerSpeakSample {
+	private static final long ORIGIN = System.nanoTime();
+
+	/**
+	 * The number of PCM samples between two samples used to estimate the energy of an audio sample.
+	 */
+	public static final int ENERGY_STEP = 4;
+
+	/**
+	 * The length, in bytes, from which an encoded audio sample is considered as loud as possible. It corresponds to 20 ms of audio
+	 * encoded at 48 kbit/s.
+	 */
+	public static final int ENCODED_REFERENCE_LENGTH = 120;
+
+	private IVocalServer server;
+	private IVocalPlayer transmitter;
+	private byte[] data;
+	private boolean isMono, isEncoded;
+	private LocalTime time;
+	private int sequence, timestamp, receptionTime;
+	private volatile double energy;
+	private Map<IRequestManager, IPlayerSpeakFrame> frames;
+
+	/**
+	 * Creates a sample that gather the properties of an audio sample shared by every receiver. The frame to send to a receiver depends
+	 * on the version of the communication protocol of the receiver, that is why a frame is created once for each version and shared
+	 * by receivers.
+	 * 
+	 * @param server      The server on which the transmitter is speaking.
+	 * @param transmitter The speaking player.
+	 * @param data        The bytes array that represents an audio sample.
+	 * @param isMono      True if the audio signal is a mono signal, false otherwise.
+	 * @param isEncoded   True if the audio sample has been encoded, false otherwise.
+	 * @param sequence    The number of the sample in the samples sent by the transmitter.
+	 * @param timestamp   The time, in milliseconds, at which the sample has been sent by the transmitter.
+	 */
+	public PlayerSpeakSample(IVocalServer server, IVocalPlayer transmitter, byte[] data, boolean isMono, boolean isEncoded, int sequence, int timestamp) {
+		this.server = server;
+		this.transmitter = transmitter;
+		this.data = data;
+		this.isMono = isMono;
+		this.isEncoded = isEncoded;
+		this.sequence = sequence;
+		this.timestamp = timestamp;
+
+		time = LocalTime.now();
+		receptionTime = currentTime();
+		frames = new ConcurrentHashMap<IRequestManager, IPlayerSpeakFrame>();
+		energy = -1;
+	}
+
+	/**
+	 * Get the number of the next audio sample of a transmitter whose protocol does not number its samples.
+	 * 
+	 * @param transmitter The speaking player.
+	 * 
+	 * @return The number of the next sample of the transmitter, 0 if the transmitter is not managed by this server.
+	 */
+	public static int nextSequence(IVocalPlayer transmitter) {
+		return transmitter instanceof VocalPlayer ? ((VocalPlayer) transmitter).nextSequence() : 0;
+	}
+
+	/**
+	 * @return The monotonic time of the server, in milliseconds.
+	 */
+	public static int currentTime() {
+		return (int) ((System.nanoTime() - ORIGIN) / 1000000);
+	}
+
+	/**
+	 * Get the bytes to send to a receiver for the given volume.
+	 * 
+	 * @param receiver The player that should hear the transmitter.
+	 * @param volume   The different sound volume of the sample for the receiver.
+	 * 
+	 * @return The bytes array to send to the receiver, null if no frame can be created for the receiver protocol version.
+	 */
+	public byte[] getBytes(IVocalPlayer receiver, VolumeResult volume) {
+		IRequestManager manager = ((VocalPlayer) receiver).getRequestManager();
+		if (manager == null)
+			return null;
+
+		IPlayerSpeakFrame frame = frames.get(manager);
+		if (frame == null) {
+			frame = manager.createPlayerSpeakFrame(this);
+			if (frame == null)
+				return null;
+
+			IPlayerSpeakFrame previous = frames.putIfAbsent(manager, frame);
+			if (previous != null)
+				frame = previous;
+		}
+
+		return frame.getBytes(volume);
+	}
+
+	/**
+	 * Get an estimation of the loudness of this sample. For an encoded sample, the energy cannot be computed without decoding the
+	 * sample: with a variable bitrate codec, silence and quiet speech are encoded with fewer bytes than loud speech, so the energy is
+	 * the length of the sample relative to {@link #ENCODED_REFERENCE_LENGTH}. Otherwise the sample is considered as 16 bits
+	 * little-endian PCM and the energy is the mean amplitude of one sample out of {@link #ENERGY_STEP}. The energy is computed at most
+	 * once.
+	 * 
+	 * @return The energy of this sample, between 0 and 1.
+	 */
+	public double getEnergy() {
+		if (energy < 0)
+			energy = isEncoded ? Math.min(1, (double) data.length / ENCODED_REFERENCE_LENGTH) : computeEnergy();
+		return energy;
+	}
+
+	/**
+	 * @return The speaking player.
+	 */
+	public IVocalPlayer getTransmitter() {
+		return transmitter;
+	}
+
+	/**
+	 * @return The bytes array that represents an audio sample.
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+	/**
+	 * @return True if the audio signal is a mono signal, false otherwise.
+	 */
+	public boolean isMono() {
+		return isMono;
+	}
+
+	/**
+	 * @return True if the audio sample has been encoded, false otherwise.
+	 */
+	public boolean isEncoded() {
+		return isEncoded;
+	}
+
+	/**
+	 * @return The time at which the sample has been received by the server.
+	 */
+	public LocalTime getTime() {
+		return time;
+	}
+
+	/**
+	 * @return The number of the sample in the samples sent by the transmitter.
+	 */
+	public int getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return The time, in milliseconds, at which the sample has been sent by the transmitter. When the protocol of the transmitter
+	 *         does not timestamp its samples, this is the time at which the sample has been received by the server.
+	 */
+	public int getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return The monotonic time, in milliseconds, at which the sample has been received by the server.
+	 */
+	public int getReceptionTime() {
+		return receptionTime;
+	}
+
+	private double computeEnergy() {
+		int count = 0;
+		long sum = 0;
+		for (int i = 0; i + 1 < data.length; i += 2 * ENERGY_STEP) {
+			sum += Math.abs((short) ((data[i] & 0xFF) | (data[i + 1] << 8)));
+			count++;
+		}
+		return count == 0 ? 0 : (double) sum / count / Short.MAX_VALUE;
+	}
+}
@@ -1,35 +1,30 @@
 package fr.pederobien.vocal.server.impl;
 
-import java.time.LocalTime;
+import java.net.InetAddress;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import fr.pederobien.communication.event.ConnectionLostEvent;
 import fr.pederobien.communication.event.UnexpectedDataReceivedEvent;
 import fr.pederobien.communication.interfaces.IConnection;
 import fr.pederobien.communication.interfaces.ITcpConnection;
-import fr.pederobien.utils.event.EventHandler;
 import fr.pederobien.utils.event.EventManager;
-import fr.pederobien.utils.event.EventPriority;
-import fr.pederobien.utils.event.IEventListener;
 import fr.pederobien.vocal.common.impl.VocalErrorCode;
 import fr.pederobien.vocal.common.impl.VocalIdentifier;
 import fr.pederobien.vocal.common.interfaces.IVocalMessage;
 import fr.pederobien.vocal.server.event.VocalClientDisconnectPostEvent;
-import fr.pederobien.vocal.server.event.VocalPlayerDeafenChangePostEvent;
-import fr.pederobien.vocal.server.event.VocalPlayerMuteByChangePostEvent;
-import fr.pederobien.vocal.server.event.VocalPlayerMuteChangePostEvent;
-import fr.pederobien.vocal.server.event.VocalPlayerNameChangePostEvent;
 import fr.pederobien.vocal.server.event.VocalServerClientJoinPostEvent;
 import fr.pederobien.vocal.server.event.VocalServerClientLeavePostEvent;
-import fr.pederobien.vocal.server.event.VocalServerPlayerAddPostEvent;
-import fr.pederobien.vocal.server.event.VocalServerPlayerRemovePostEvent;
 import fr.pederobien.vocal.server.interfaces.IVocalPlayer;
 import fr.pederobien.vocal.server.interfaces.IVocalServer;
 
-public class PlayerVocalClient extends AbstractTcpVocalConnection implements IEventListener {
+public class PlayerVocalClient extends AbstractTcpVocalConnection {
 	private IVocalPlayer player;
 	private AtomicBoolean isRegistered;
 	private AtomicBoolean isJoined;
+	private ServerConfigurationCursor cursor;
+	private AtomicLong resumed, acknowledged;
+	private volatile boolean isConfigured;
 
 	/**
 	 * Creates a client associated to a specific player.
@@ -42,6 +37,10 @@ public class PlayerVocalClient extends AbstractTcpVocalConnection implements IEv
 
 		isRegistered = new AtomicBoolean(false);
 		isJoined = new AtomicBoolean(false);
+		cursor = new ServerConfigurationCursor(this);
+		resumed = new AtomicLong(-1);
+		acknowledged = new AtomicLong(-1);
+		isConfigured = false;
 	}
 
 	/**
@@ -67,110 +66,196 @@ public class PlayerVocalClient extends AbstractTcpVocalConnection implements IEv
 		if (player == null)
 			player = new VocalPlayer(getServer(), name, isMute, isDeafen);
 		else {
+			((VocalPlayer) player).register();
 			player.setName(name);
 			player.setMute(isMute);
 			player.setDeafen(isDeafen);
 		}
 
 		((VocalPlayer) player).setTcpConnection((ITcpConnection) getConnection());
+		((VocalPlayer) player).setRequestManager(getRequestManager());
 		EventManager.callEvent(new VocalServerClientJoinPostEvent(getServer(), this));
 		return true;
 	}
 
 	/**
-	 * Sends a request to the client, if the player has joined the server, in order to time-synchronize with the server.
+	 * Gives to this client the player of a suspended session. The state of the player is kept as it was when the connection of the
+	 * previous client has been lost. If the state acknowledged by the previous client is known, the server configuration is not sent
+	 * again: only the changes since this state are sent once the join request has been answered, and no update is sent to this client
+	 * before. Otherwise the client has to request the server configuration.
 	 * 
-	 * @param time The actual time on the server.
+	 * @param player       The player of the suspended session.
+	 * @param acknowledged The number of changes of the server the previous client has applied, -1 if the client needs the whole server
+	 *                     configuration.
+	 * 
+	 * @return True if the player has been resumed, false if this client has already joined the server.
 	 */
-	public void synchronize(LocalTime time) {
-		doIfPlayerJoined(() -> send(getServer().getRequestManager().onTimeSynchronization(getVersion(), time)));
-	}
+	public boolean resume(IVocalPlayer player, long acknowledged) {
+		if (!isJoined.compareAndSet(false, true))
+			return false;
 
-	@Override
-	protected void setConnection(IConnection connection) {
-		super.setConnection((ITcpConnection) connection);
+		resumed.set(acknowledged);
 
-		if (establishCommunicationProtocolVersion() && isRegistered.compareAndSet(false, true))
-			EventManager.registerListener(this);
+		this.player = player;
+		((VocalPlayer) player).setTcpConnection((ITcpConnection) getConnection());
+		((VocalPlayer) player).setRequestManager(getRequestManager());
+		EventManager.callEvent(new VocalServerClientJoinPostEvent(getServer(), this));
+		return true;
 	}
 
-	@EventHandler(priority = EventPriority.HIGHEST)
-	private void onServerPlayerAdd(VocalServerPlayerAddPostEvent event) {
-		if (!event.getList().getServer().equals(getServer()))
-			return;
-
-		doIfPlayerJoined(() -> send(getServer().getRequestManager().onServerPlayerAdd(getVersion(), event.getPlayer())));
+	/**
+	 * @return The address of the host of this client, null if unknown.
+	 */
+	public InetAddress getHost() {
+		ITcpConnection connection = (ITcpConnection) getConnection();
+		return connection == null || connection.getAddress() == null ? null : connection.getAddress().getAddress();
 	}
 
-	@EventHandler(priority = EventPriority.HIGHEST)
-	private void onServerPlayerRemove(VocalServerPlayerRemovePostEvent event) {
-		if (!event.getList().getServer().equals(getServer()))
-			return;
+	/**
+	 * @return True if the player associated to this client has joined the server, false otherwise.
+	 */
+	public boolean isJoined() {
+		return isJoined.get();
+	}
 
-		doIfPlayerJoined(() -> send(getServer().getRequestManager().onServerPlayerRemove(getVersion(), event.getPlayer())));
+	/**
+	 * @return True if the player of this client has been resumed and the changes it has missed have not been sent yet.
+	 */
+	public boolean isResuming() {
+		return resumed.get() >= 0;
 	}
 
-	@EventHandler(priority = EventPriority.HIGHEST)
-	private void onPlayerNameChange(VocalPlayerNameChangePostEvent event) {
-		if (!event.getPlayer().getServer().equals(getServer()))
-			return;
+	/**
+	 * Marks the changes missed by this client as sent. The client then knows the whole server configuration. For internal use only.
+	 * 
+	 * @param acknowledged The number of changes of the server the previous client had applied.
+	 */
+	public void setResumed(long acknowledged) {
+		this.acknowledged.set(acknowledged);
+		isConfigured = true;
+		resumed.set(-1);
+	}
 
-		doIfPlayerJoined(() -> send(getServer().getRequestManager().onPlayerNameChange(getVersion(), event.getOldName(), event.getPlayer().getName())));
+	/**
+	 * @return The number of changes of the server this client is known to have applied, -1 if unknown.
+	 */
+	public long getAcknowledged() {
+		return acknowledged.get();
 	}
 
-	@EventHandler(priority = EventPriority.HIGHEST)
-	private void onPlayerMuteChange(VocalPlayerMuteChangePostEvent event) {
-		if (!event.getPlayer().getServer().equals(getServer()))
-			return;
+	/**
+	 * Records that this client has applied the given number of changes of the server. Nothing happens if the client does not know the
+	 * whole server configuration. For internal use only.
+	 * 
+	 * @param acknowledged The number of changes of the server this client has applied.
+	 */
+	public void acknowledge(long acknowledged) {
+		if (isConfigured)
+			this.acknowledged.accumulateAndGet(acknowledged, Math::max);
+	}
 
-		doIfPlayerJoined(() -> send(getServer().getRequestManager().onPlayerMuteChange(getVersion(), event.getPlayer())));
+	/**
+	 * @return True if this client has received the whole server configuration, false otherwise.
+	 */
+	public boolean isConfigured() {
+		return isConfigured;
 	}
 
-	@EventHandler(priority = EventPriority.HIGHEST)
-	private void onPlayerMuteByChange(VocalPlayerMuteByChangePostEvent event) {
-		if (!event.getPlayer().getServer().equals(getServer()) || !event.getSource().equals(player))
-			return;
+	/**
+	 * Set whether this client knows the whole server configuration. When it does not, the state it has acknowledged is forgotten. For
+	 * internal use only.
+	 * 
+	 * @param isConfigured True if the client has received the whole server configuration, false otherwise.
+	 */
+	public void setConfigured(boolean isConfigured) {
+		this.isConfigured = isConfigured;
+		if (!isConfigured)
+			acknowledged.set(-1);
+	}
 
-		doIfPlayerJoined(() -> send(getServer().getRequestManager().onPlayerMuteByChange(getVersion(), event.getPlayer(), event.getSource())));
+	/**
+	 * @return The cursor that sends the players of the server to this client page by page.
+	 */
+	public ServerConfigurationCursor getConfigurationCursor() {
+		return cursor;
 	}
 
-	@EventHandler(priority = EventPriority.HIGHEST)
-	private void onPlayerDeafenChange(VocalPlayerDeafenChangePostEvent event) {
-		if (!event.getPlayer().getServer().equals(getServer()))
-			return;
+	@Override
+	protected void setConnection(IConnection connection) {
+		super.setConnection((ITcpConnection) connection);
 
-		doIfPlayerJoined(() -> send(getServer().getRequestManager().onPlayerDeafenChange(getVersion(), event.getPlayer())));
+		// Requests from the remote are ignored until a common version of the communication protocol has been found.
+		establishCommunicationProtocolVersion().thenAccept(isEstablished -> isRegistered.set(isEstablished));
 	}
 
-	@EventHandler(priority = EventPriority.LOWEST)
-	private void onUnexpectedDataReceived(UnexpectedDataReceivedEvent event) {
+	/**
+	 * Handles a request received from the remote. The client list dispatches the request to the client associated to the connection
+	 * that received it. For internal use only.
+	 * 
+	 * @param event The event that contains the received bytes.
+	 */
+	protected void onUnexpectedDataReceived(UnexpectedDataReceivedEvent event) {
+		if (!isRegistered.get())
+			return;
+
 		IVocalMessage request = checkReceivedRequest(event);
 		if (request == null)
 			return;
 
 		// Always allow this request whatever the client state.
 		if (request.getHeader().getIdentifier() == VocalIdentifier.SET_SERVER_LEAVE) {
-			isJoined.set(false);
-			EventManager.callEvent(new VocalServerClientLeavePostEvent(getServer(), this));
+			if (isJoined.getAndSet(false)) {
+				EventManager.callEvent(new VocalServerClientLeavePostEvent(getServer(), this));
+
+				// The player is no more registered on the server, its identifier can be reused by the next player.
+				((VocalPlayer) player).dispose();
+			}
 			send(VocalServerMessageFactory.answer(request));
 			return;
 		}
 
-		if (checkPermission(request))
+		if (checkPermission(request)) {
 			send(getServer().getRequestManager().answer(new RequestReceivedHolder(this, event, request)));
-		else
+			if (request.getHeader().getIdentifier() == VocalIdentifier.GET_SERVER_CONFIGURATION)
+				setConfigured(true);
+			sendPendingChanges();
+		} else
 			send(VocalServerMessageFactory.answer(request, VocalErrorCode.PERMISSION_REFUSED));
 	}
 
-	@EventHandler(priority = EventPriority.LOWEST)
-	private void OnConnectionLostEvent(ConnectionLostEvent event) {
+	/**
+	 * Handles the loss of the connection with the remote. The client list dispatches the event to the client associated to the lost
+	 * connection. For internal use only.
+	 * 
+	 * @param event The event that contains the lost connection.
+	 */
+	protected void onConnectionLost(ConnectionLostEvent event) {
 		if (!event.getConnection().equals(getConnection()))
 			return;
 
-		isJoined.set(false);
+		boolean wasJoined = isJoined.getAndSet(false);
 		getConnection().dispose();
+
+		// The player remains on the server during the grace period in order to be resumed by a new client.
+		if (wasJoined && ((VocalServer) getServer()).getSessions().suspend(this)) {
+			((VocalServer) getServer()).getClients().remove(this);
+			return;
+		}
+
 		EventManager.callEvent(new VocalClientDisconnectPostEvent(this));
-		EventManager.unregisterListener(this);
+
+		if (player != null)
+			((VocalPlayer) player).dispose();
+	}
+
+	private void sendPendingChanges() {
+		long from = resumed.get();
+		if (from < 0)
+			return;
+
+		// The changes are no more in the log, the client has to join the server again.
+		if (!((VocalServer) getServer()).getBroadcaster().sendChanges(this, from))
+			getConnection().dispose();
 	}
 
 	private boolean checkPermission(IVocalMessage request) {
@@ -191,9 +276,4 @@ public class PlayerVocalClient extends AbstractTcpVocalConnection implements IEv
 			return false;
 		}
 	}
-
-	private void doIfPlayerJoined(Runnable runnable) {
-		if (isJoined.get())
-			runnable.run();
-	}
 }
@@ -0,0 +1,136 @@
+package fr.pederobien.vocal.server.impl;
+
+import fr.pederobien.vocal.server.interfaces.IPosition;
+
+public class Position implements IPosition {
+	private volatile Snapshot snapshot;
+	private Runnable onUpdate;
+
+	/**
+	 * Creates a position located at the origin and looking in the Z axis direction.
+	 */
+	public Position() {
+		this(0, 0, 0, 0, 0);
+	}
+
+	/**
+	 * Creates a position located at the origin and looking in the Z axis direction.
+	 * 
+	 * @param onUpdate The code to run each time this position is updated.
+	 */
+	public Position(Runnable onUpdate) {
+		this();
+		this.onUpdate = onUpdate;
+	}
+
+	/**
+	 * Creates a position based on the given coordinates and orientation.
+	 * 
+	 * @param x     The X coordinate.
+	 * @param y     The Y coordinate.
+	 * @param z     The Z coordinate.
+	 * @param yaw   The yaw angle, in radian.
+	 * @param pitch The pitch angle, in radian.
+	 */
+	public Position(double x, double y, double z, double yaw, double pitch) {
+		snapshot = new Snapshot(x, y, z, yaw, pitch);
+	}
+
+	/**
+	 * Get an immutable copy of the given position. The coordinates and the orientation of the copy always come from the same update,
+	 * whereas reading them one by one on a position updated by another thread may mix two updates.
+	 * 
+	 * @param position The position to copy.
+	 * 
+	 * @return An immutable position, the given position if it is not a {@link Position}.
+	 */
+	public static IPosition getSnapshot(IPosition position) {
+		return position instanceof Position ? ((Position) position).snapshot : position;
+	}
+
+	@Override
+	public double getX() {
+		return snapshot.x;
+	}
+
+	@Override
+	public double getY() {
+		return snapshot.y;
+	}
+
+	@Override
+	public double getZ() {
+		return snapshot.z;
+	}
+
+	@Override
+	public double getYaw() {
+		return snapshot.yaw;
+	}
+
+	@Override
+	public double getPitch() {
+		return snapshot.pitch;
+	}
+
+	@Override
+	public void update(double x, double y, double z, double yaw, double pitch) {
+		// The coordinates and the orientation are published at once.
+		snapshot = new Snapshot(x, y, z, yaw, pitch);
+
+		if (onUpdate != null)
+			onUpdate.run();
+	}
+
+	@Override
+	public String toString() {
+		return snapshot.toString();
+	}
+
+	private static class Snapshot implements IPosition {
+		private final double x, y, z, yaw, pitch;
+
+		private Snapshot(double x, double y, double z, double yaw, double pitch) {
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			this.yaw = yaw;
+			this.pitch = pitch;
+		}
+
+		@Override
+		public double getX() {
+			return x;
+		}
+
+		@Override
+		public double getY() {
+			return y;
+		}
+
+		@Override
+		public double getZ() {
+			return z;
+		}
+
+		@Override
+		public double getYaw() {
+			return yaw;
+		}
+
+		@Override
+		public double getPitch() {
+			return pitch;
+		}
+
+		@Override
+		public void update(double x, double y, double z, double yaw, double pitch) {
+			throw new UnsupportedOperationException("A position snapshot cannot be updated");
+		}
+
+		@Override
+		public String toString() {
+			return String.format("{x=%s, y=%s, z=%s, yaw=%s, pitch=%s}", x, y, z, yaw, pitch);
+		}
+	}
+}
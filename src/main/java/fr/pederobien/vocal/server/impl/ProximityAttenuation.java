@@ -0,0 +1,149 @@
+package fr.pederobien.vocal.server.impl;
+
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleUnaryOperator;
+
+import fr.pederobien.vocal.common.impl.VolumeResult;
+import fr.pederobien.vocal.server.interfaces.IPosition;
+
+public class ProximityAttenuation {
+	/**
+	 * The number of values computed from the falloff curve between a distance of 0 and the hearing radius.
+	 */
+	public static final int TABLE_SIZE = 1024;
+
+	/**
+	 * The default falloff curve: the volume linearly decreases from 1 to 0 with the distance.
+	 */
+	public static final DoubleUnaryOperator LINEAR = distance -> 1.0 - distance;
+
+	private volatile Curve curve;
+	private DoubleConsumer onRadiusChange;
+
+	/**
+	 * Creates an attenuation used to compute the sound volume of a receiver according to its distance with the transmitter.
+	 * 
+	 * @param radius  The distance beyond which a transmitter cannot be heard.
+	 * @param falloff The function that gives, for a distance normalized between 0 (same position) and 1 (hearing radius), the global
+	 *                volume between 0 and 1.
+	 */
+	public ProximityAttenuation(double radius, DoubleUnaryOperator falloff) {
+		curve = new Curve(radius, falloff);
+	}
+
+	/**
+	 * Creates an attenuation used to compute the sound volume of a receiver according to its distance with the transmitter.
+	 * 
+	 * @param radius         The distance beyond which a transmitter cannot be heard.
+	 * @param falloff        The function that gives, for a distance normalized between 0 (same position) and 1 (hearing radius), the
+	 *                       global volume between 0 and 1.
+	 * @param onRadiusChange The code to run with the new hearing radius each time it changes.
+	 */
+	public ProximityAttenuation(double radius, DoubleUnaryOperator falloff, DoubleConsumer onRadiusChange) {
+		this(radius, falloff);
+		this.onRadiusChange = onRadiusChange;
+	}
+
+	/**
+	 * Creates an attenuation with a linear falloff curve.
+	 * 
+	 * @param radius The distance beyond which a transmitter cannot be heard.
+	 */
+	public ProximityAttenuation(double radius) {
+		this(radius, LINEAR);
+	}
+
+	/**
+	 * @return The distance beyond which a transmitter cannot be heard.
+	 */
+	public double getRadius() {
+		return curve.radius;
+	}
+
+	/**
+	 * Set the distance beyond which a transmitter cannot be heard.
+	 * 
+	 * @param radius The new hearing radius.
+	 */
+	public void setRadius(double radius) {
+		Curve old = curve;
+		curve = new Curve(radius, old.falloff);
+
+		if (onRadiusChange != null && old.radius != radius)
+			onRadiusChange.accept(radius);
+	}
+
+	/**
+	 * @return The function that gives the global volume for a normalized distance.
+	 */
+	public DoubleUnaryOperator getFalloff() {
+		return curve.falloff;
+	}
+
+	/**
+	 * Set the function that gives, for a distance normalized between 0 (same position) and 1 (hearing radius), the global volume
+	 * between 0 and 1. The function is evaluated once for each value of the lookup table.
+	 * 
+	 * @param falloff The new falloff curve.
+	 */
+	public void setFalloff(DoubleUnaryOperator falloff) {
+		curve = new Curve(curve.radius, falloff);
+	}
+
+	/**
+	 * Computes the sound volume with which a receiver hears a transmitter. The global volume depends on the distance between both
+	 * players whereas the left and right volumes depend on the direction of the transmitter relative to the receiver orientation.
+	 * 
+	 * @param transmitter The position of the speaking player.
+	 * @param receiver    The position of the player that hears the transmitter.
+	 * 
+	 * @return The sound volume of the receiver, null if the receiver is out of range.
+	 */
+	public VolumeResult getVolume(IPosition transmitter, IPosition receiver) {
+		Curve curve = this.curve;
+		transmitter = Position.getSnapshot(transmitter);
+		receiver = Position.getSnapshot(receiver);
+
+		double dx = transmitter.getX() - receiver.getX();
+		double dy = transmitter.getY() - receiver.getY();
+		double dz = transmitter.getZ() - receiver.getZ();
+
+		double squaredDistance = dx * dx + dy * dy + dz * dz;
+		if (squaredDistance >= curve.squaredRadius)
+			return null;
+
+		double distance = Math.sqrt(squaredDistance);
+		double global = curve.table[(int) (distance * curve.scale)];
+		if (global <= 0)
+			return null;
+
+		// Projection of the horizontal direction of the transmitter on the receiver's right vector.
+		double horizontal = Math.sqrt(dx * dx + dz * dz);
+		if (horizontal == 0)
+			return new VolumeResult(global, 1.0, 1.0);
+
+		double yaw = receiver.getYaw();
+		double pan = (dx * Math.cos(yaw) - dz * Math.sin(yaw)) / horizontal;
+		return new VolumeResult(global, Math.min(1.0, 1.0 - pan), Math.min(1.0, 1.0 + pan));
+	}
+
+	private static class Curve {
+		private double radius, squaredRadius, scale;
+		private DoubleUnaryOperator falloff;
+		private double[] table;
+
+		private Curve(double radius, DoubleUnaryOperator falloff) {
+			if (radius <= 0)
+				throw new IllegalArgumentException("The hearing radius must be strictly positive");
+
+			this.radius = radius;
+			this.falloff = falloff;
+
+			squaredRadius = radius * radius;
+			scale = TABLE_SIZE / radius;
+			table = new double[TABLE_SIZE + 1];
+			for (int i = 0; i <= TABLE_SIZE; i++)
+				table[i] = Math.max(0, Math.min(1.0, falloff.applyAsDouble((double) i / TABLE_SIZE)));
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package fr.pederobien.vocal.server.impl;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import fr.pederobien.vocal.server.interfaces.IRequestManager;
+
+public class ReceiverSendQueue {
+	/**
+	 * The default number of audio samples that can wait to be sent to one receiver.
+	 */
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private Queue<Entry> queue;
+	private AtomicBoolean isScheduled;
+	private AtomicInteger depth, maxDepth;
+	private AtomicLong sent, dropped, datagrams;
+	private int capacity;
+	private VocalPlayer receiver;
+	private AudioExecutor executor;
+	private BiConsumer<byte[], InetSocketAddress> sender;
+
+	/**
+	 * Creates an ordered queue of audio samples to send to one receiver. Samples are sent in the order they have been added, by at
+	 * most one thread of the executor at a time, so that consecutive samples never leave the socket out of order. When the queue is
+	 * full, new samples are dropped: a receiver that cannot keep up loses audio instead of delaying every following sample. When a
+	 * bundling window is set on the server and the protocol version of the receiver supports it, the samples added during the window
+	 * are gathered in as few datagrams as possible.
+	 * 
+	 * @param executor The executor on which the queue is drained.
+	 * @param capacity The number of audio samples that can wait to be sent.
+	 * @param receiver The player to which the audio samples are sent.
+	 * @param sender   The action that sends bytes to an address.
+	 */
+	public ReceiverSendQueue(AudioExecutor executor, int capacity, VocalPlayer receiver, BiConsumer<byte[], InetSocketAddress> sender) {
+		this.executor = executor;
+		this.capacity = capacity;
+		this.receiver = receiver;
+		this.sender = sender;
+
+		queue = new ConcurrentLinkedQueue<Entry>();
+		isScheduled = new AtomicBoolean(false);
+		depth = new AtomicInteger(0);
+		maxDepth = new AtomicInteger(0);
+		sent = new AtomicLong(0);
+		dropped = new AtomicLong(0);
+		datagrams = new AtomicLong(0);
+	}
+
+	/**
+	 * Appends the given bytes to this queue and schedules the queue to be drained if necessary.
+	 * 
+	 * @param bytes   The bytes to send.
+	 * @param address The address to which the bytes should be sent.
+	 * 
+	 * @return True if the bytes have been appended, false if there are no bytes or if the queue is full.
+	 */
+	public boolean offer(byte[] bytes, InetSocketAddress address) {
+		if (bytes == null)
+			return false;
+
+		int current = depth.incrementAndGet();
+		if (current > capacity) {
+			depth.decrementAndGet();
+			dropped.incrementAndGet();
+			return false;
+		}
+
+		queue.offer(new Entry(bytes, address));
+		maxDepth.accumulateAndGet(current, Math::max);
+
+		if (isScheduled.compareAndSet(false, true))
+			schedule();
+		return true;
+	}
+
+	/**
+	 * @return The number of audio samples waiting to be sent.
+	 */
+	public int getDepth() {
+		return depth.get();
+	}
+
+	/**
+	 * @return The highest number of audio samples that have been waiting to be sent at the same time.
+	 */
+	public int getMaxDepth() {
+		return maxDepth.get();
+	}
+
+	/**
+	 * @return The number of audio samples sent since this queue has been created.
+	 */
+	public long getSentCount() {
+		return sent.get();
+	}
+
+	/**
+	 * @return The number of audio samples dropped because this queue was full.
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return The number of datagrams sent since this queue has been created. It is lower than the number of audio samples sent when
+	 *         samples are bundled.
+	 */
+	public long getDatagramCount() {
+		return datagrams.get();
+	}
+
+	/**
+	 * Removes every audio sample waiting to be sent.
+	 */
+	public void clear() {
+		while (queue.poll() != null)
+			depth.decrementAndGet();
+	}
+
+	private void schedule() {
+		int window = ((VocalServer) receiver.getServer()).getBundlingWindow();
+		if (window <= 0 || !isBundling())
+			executor.execute(() -> drain());
+		else
+			CompletableFuture.delayedExecutor(window, TimeUnit.MILLISECONDS, runnable -> executor.execute(runnable)).execute(() -> drain());
+	}
+
+	private void drain() {
+		try {
+			IRequestManager manager = receiver.getRequestManager();
+			boolean isBundled = ((VocalServer) receiver.getServer()).getBundlingWindow() > 0 && manager != null && manager.getMaxBundleLength() > 0;
+
+			List<byte[]> frames = new ArrayList<byte[]>();
+			InetSocketAddress address = null;
+
+			Entry entry;
+			while ((entry = queue.poll()) != null) {
+				depth.decrementAndGet();
+				if (!isBundled) {
+					send(entry.bytes, entry.address);
+					sent.incrementAndGet();
+					continue;
+				}
+
+				// Frames are gathered as long as the receiver address does not change.
+				if (!frames.isEmpty() && !entry.address.equals(address)) {
+					send(manager.createBundles(frames), address);
+					sent.addAndGet(frames.size());
+					frames = new ArrayList<byte[]>();
+				}
+
+				address = entry.address;
+				frames.add(entry.bytes);
+			}
+
+			if (!frames.isEmpty()) {
+				send(manager.createBundles(frames), address);
+				sent.addAndGet(frames.size());
+			}
+		} finally {
+			// Even if a sample could not be sent, the queue must not stay scheduled forever.
+			isScheduled.set(false);
+
+			// A sample may have been added between the last poll and the reset of the flag.
+			if (!queue.isEmpty() && isScheduled.compareAndSet(false, true))
+				schedule();
+		}
+	}
+
+	/**
+	 * @return True if the protocol version of the receiver supports to gather several audio samples in one datagram.
+	 */
+	private boolean isBundling() {
+		IRequestManager manager = receiver.getRequestManager();
+		return manager != null && manager.getMaxBundleLength() > 0;
+	}
+
+	private void send(List<byte[]> datagrams, InetSocketAddress address) {
+		for (byte[] datagram : datagrams)
+			send(datagram, address);
+	}
+
+	private void send(byte[] bytes, InetSocketAddress address) {
+		sender.accept(bytes, address);
+		datagrams.incrementAndGet();
+	}
+
+	private static class Entry {
+		private byte[] bytes;
+		private InetSocketAddress address;
+
+		private Entry(byte[] bytes, InetSocketAddress address) {
+			this.bytes = bytes;
+			this.address = address;
+		}
+	}
+}
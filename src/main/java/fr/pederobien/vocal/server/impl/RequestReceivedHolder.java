@@ -1,10 +1,13 @@
 package fr.pederobien.vocal.server.impl;
 
+import java.net.InetSocketAddress;
+
 import fr.pederobien.communication.event.DataReceivedEvent;
 import fr.pederobien.vocal.common.interfaces.IVocalMessage;
 
 public class RequestReceivedHolder {
 	private DataReceivedEvent event;
+	private InetSocketAddress address;
 	private IVocalMessage request;
 	private AbstractVocalConnection connection;
 
@@ -17,6 +20,21 @@ public class RequestReceivedHolder {
 	public RequestReceivedHolder(AbstractVocalConnection connection, DataReceivedEvent event, IVocalMessage request) {
 		this.connection = connection;
 		this.event = event;
+		this.address = event.getAddress();
+		this.request = request;
+	}
+
+	/**
+	 * Creates a holder to gather the request received from the remote and the connection that received the request, when the request
+	 * has not been received through an event.
+	 * 
+	 * @param connection The connection that has received the request.
+	 * @param address    The address of the remote.
+	 * @param request    The request sent by the remote.
+	 */
+	public RequestReceivedHolder(AbstractVocalConnection connection, InetSocketAddress address, IVocalMessage request) {
+		this.connection = connection;
+		this.address = address;
 		this.request = request;
 	}
 
@@ -28,12 +46,19 @@ public class RequestReceivedHolder {
 	}
 
 	/**
-	 * @return The event thrown by a connection.
+	 * @return The event thrown by a connection, null if the request has not been received through an event.
 	 */
 	public DataReceivedEvent getEvent() {
 		return event;
 	}
 
+	/**
+	 * @return The address of the remote that sent the request.
+	 */
+	public InetSocketAddress getAddress() {
+		return address;
+	}
+
 	/**
 	 * @return The request sent by the remote.
 	 */
@@ -0,0 +1,190 @@
+package fr.pederobien.vocal.server.impl;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import fr.pederobien.vocal.server.interfaces.IRequestManager;
+import fr.pederobien.vocal.server.interfaces.IVocalPlayer;
+
+public class ServerConfigurationCursor {
+	/**
+	 * The default number of players sent by page.
+	 */
+	public static final int DEFAULT_PAGE_SIZE = 64;
+
+	/**
+	 * The position of the cursor when the client knows every player of the server.
+	 */
+	public static final long COMPLETE = Long.MAX_VALUE;
+
+	private PlayerVocalClient client;
+	private int pageSize;
+	private long position;
+	private int streamed;
+	private Page last;
+	private Lock lock;
+
+	/**
+	 * Creates a cursor that sends to a client the players of the server, page by page, in the order in which they have been registered
+	 * on the server. Each player is sent as if it had just been registered, followed by its mute by status for the client player if
+	 * necessary. The updates about a player that has not been sent yet are not sent to the client: the page that contains the player
+	 * sends its current state. Until the client asks for the first page, every update is sent.
+	 * 
+	 * @param client   The client to which the players are sent.
+	 * @param pageSize The maximum number of players sent by page.
+	 */
+	public ServerConfigurationCursor(PlayerVocalClient client, int pageSize) {
+		this.client = client;
+		this.pageSize = pageSize;
+
+		position = COMPLETE;
+		streamed = 0;
+		lock = new ReentrantLock(true);
+	}
+
+	/**
+	 * Creates a cursor that sends to a client the players of the server, page by page, with pages of 64 players.
+	 * 
+	 * @param client The client to which the players are sent.
+	 */
+	public ServerConfigurationCursor(PlayerVocalClient client) {
+		this(client, DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * @return The registration number of the next player to send to the client, {@link #COMPLETE} if the client knows every player.
+	 */
+	public long getPosition() {
+		lock.lock();
+		try {
+			return position;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Sends to the client the page of players that starts at the given cursor. A cursor equal to 0 starts over from the first player
+	 * registered on the server: the client is expected to forget the players it knows. Any other cursor must be the one returned by
+	 * the previous page. If the request of the previous page is received again, because the answer has been lost, the previous page
+	 * is returned again without sending the players again.
+	 * 
+	 * @param cursor The registration number from which players are sent.
+	 * 
+	 * @return An optional that contains the page that has been sent, an empty optional if the cursor is not valid.
+	 */
+	public Optional<Page> next(long cursor) {
+		lock.lock();
+		try {
+			if (cursor != 0 && last != null && cursor == last.cursor)
+				return Optional.of(last);
+
+			if (cursor == 0) {
+				// The client forgets the players it knows until the last page has been sent.
+				streamed = 0;
+				client.setConfigured(false);
+			} else if (cursor != position)
+				return Optional.empty();
+
+			IRequestManager manager = client.getRequestManager();
+			IVocalPlayer requester = client.getPlayer();
+			if (manager == null || requester == null)
+				return Optional.empty();
+
+			long next = cursor;
+			int count = 0;
+			boolean isLast = true;
+			for (Map.Entry<Long, IVocalPlayer> entry : ((ServerPlayerList) client.getServer().getPlayers()).getRegistrations(cursor).entrySet()) {
+				if (count == pageSize) {
+					isLast = false;
+					break;
+				}
+
+				IVocalPlayer player = entry.getValue();
+				client.send(manager.onServerPlayerAdd(player));
+				if (player.isMuteBy(requester))
+					client.send(manager.onPlayerMuteByChange(player, requester));
+
+				next = entry.getKey() + 1;
+				count++;
+			}
+
+			streamed += count;
+			position = isLast ? COMPLETE : next;
+			if (isLast)
+				client.setConfigured(true);
+			last = new Page(cursor, next, count, streamed, isLast);
+			return Optional.of(last);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Runs the given task if the client knows the given player, so that an update about a player is never sent before the page that
+	 * contains the player. The task runs while no page is sent. For internal use only.
+	 * 
+	 * @param player The player the update is about, null if the update is not about a specific player.
+	 * @param task   The task that sends the update to the client.
+	 */
+	public void execute(IVocalPlayer player, Runnable task) {
+		lock.lock();
+		try {
+			if (player == null || position == COMPLETE || ((VocalPlayer) player).getRegistration() < position)
+				task.run();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public static class Page {
+		private final long cursor, next;
+		private final int count, streamed;
+		private final boolean isLast;
+
+		private Page(long cursor, long next, int count, int streamed, boolean isLast) {
+			this.cursor = cursor;
+			this.next = next;
+			this.count = count;
+			this.streamed = streamed;
+			this.isLast = isLast;
+		}
+
+		/**
+		 * @return The cursor the page has been requested with.
+		 */
+		public long getCursor() {
+			return cursor;
+		}
+
+		/**
+		 * @return The cursor the client should send in order to get the next page.
+		 */
+		public long getNext() {
+			return next;
+		}
+
+		/**
+		 * @return The number of players sent in this page.
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * @return The number of players sent since the first page.
+		 */
+		public int getStreamed() {
+			return streamed;
+		}
+
+		/**
+		 * @return True if every player of the server has been sent, false otherwise.
+		 */
+		public boolean isLast() {
+			return isLast;
+		}
+	}
+}
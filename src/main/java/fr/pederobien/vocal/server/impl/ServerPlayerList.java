@@ -1,11 +1,16 @@
 package fr.pederobien.vocal.server.impl;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Stream;
@@ -14,6 +19,8 @@ import fr.pederobien.utils.event.EventHandler;
 import fr.pederobien.utils.event.EventManager;
 import fr.pederobien.utils.event.IEventListener;
 import fr.pederobien.vocal.server.event.VocalClientDisconnectPostEvent;
+import fr.pederobien.vocal.server.event.VocalPlayerDeafenChangePostEvent;
+import fr.pederobien.vocal.server.event.VocalPlayerMuteChangePostEvent;
 import fr.pederobien.vocal.server.event.VocalPlayerNameChangePostEvent;
 import fr.pederobien.vocal.server.event.VocalServerClientJoinPostEvent;
 import fr.pederobien.vocal.server.event.VocalServerClientLeavePostEvent;
@@ -26,18 +33,27 @@ import fr.pederobien.vocal.server.interfaces.IVocalServer;
 
 public class ServerPlayerList implements IServerPlayerList, IEventListener {
 	private VocalServer server;
-	private Map<String, IVocalPlayer> players;
+	private volatile Snapshot snapshot;
+	private Map<Integer, IVocalPlayer> identifiers;
+	private ConcurrentSkipListMap<Long, IVocalPlayer> registrations;
+	private long registration;
+	private AtomicLong stateVersion;
 	private Lock lock;
 
 	/**
-	 * Creates a player list associated to the given server.
+	 * Creates a player list associated to the given server. Readers never lock nor copy the list: each modification publishes a new
+	 * immutable snapshot of the players, associated to a new epoch.
 	 * 
 	 * @param server The server to which this list is attached.
 	 */
 	public ServerPlayerList(VocalServer server) {
 		this.server = server;
 
-		players = new HashMap<String, IVocalPlayer>();
+		snapshot = new Snapshot(0, new LinkedHashMap<String, IVocalPlayer>());
+		identifiers = new ConcurrentHashMap<Integer, IVocalPlayer>();
+		registrations = new ConcurrentSkipListMap<Long, IVocalPlayer>();
+		registration = 0;
+		stateVersion = new AtomicLong(0);
 		lock = new ReentrantLock(true);
 
 		EventManager.registerListener(this);
@@ -45,7 +61,7 @@ public class ServerPlayerList implements IServerPlayerList, IEventListener {
 
 	@Override
 	public Iterator<IVocalPlayer> iterator() {
-		return players.values().iterator();
+		return snapshot.list.iterator();
 	}
 
 	@Override
@@ -60,17 +76,77 @@ public class ServerPlayerList implements IServerPlayerList, IEventListener {
 
 	@Override
 	public Optional<IVocalPlayer> get(String name) {
-		return Optional.ofNullable(players.get(name));
+		return Optional.ofNullable(snapshot.players.get(name));
+	}
+
+	/**
+	 * Get the player associated to the given compact identifier.
+	 * 
+	 * @param id The identifier of the player to retrieve.
+	 * 
+	 * @return An optional that contains the player if registered, an empty optional otherwise.
+	 */
+	public Optional<IVocalPlayer> get(int id) {
+		return Optional.ofNullable(identifiers.get(id));
 	}
 
 	@Override
 	public Stream<IVocalPlayer> stream() {
-		return toList().stream();
+		return snapshot.list.stream();
 	}
 
 	@Override
 	public List<IVocalPlayer> toList() {
-		return new ArrayList<IVocalPlayer>(players.values());
+		return new ArrayList<IVocalPlayer>(snapshot.list);
+	}
+
+	/**
+	 * Get the players registered on the server from the given registration number, in the order in which they have been registered.
+	 * The returned view is not a snapshot: players registered after the call are visible while iterating it and players removed are
+	 * no longer visible. For internal use only.
+	 * 
+	 * @param from The lowest registration number of the players to get.
+	 * 
+	 * @return An unmodifiable view of the players by registration number.
+	 */
+	public SortedMap<Long, IVocalPlayer> getRegistrations(long from) {
+		return Collections.unmodifiableSortedMap(registrations.tailMap(from));
+	}
+
+	/**
+	 * @return An unmodifiable snapshot of the players registered on the server. The snapshot is not updated when a player is added or
+	 *         removed.
+	 */
+	public List<IVocalPlayer> getSnapshot() {
+		return snapshot.list;
+	}
+
+	/**
+	 * @return The number of modifications of this list. The epoch changes each time a player is added, removed or renamed so that
+	 *         caches depending on the players know when to be refreshed.
+	 */
+	public long getEpoch() {
+		return snapshot.epoch;
+	}
+
+	/**
+	 * @return The version of the players state. The version changes each time a player is added, removed or renamed and each time the
+	 *         mute or deafen status of a player changes.
+	 */
+	public long getStateVersion() {
+		return stateVersion.get();
+	}
+
+	@EventHandler
+	private void onPlayerMuteChange(VocalPlayerMuteChangePostEvent event) {
+		if (event.getPlayer().getServer().equals(server))
+			stateVersion.incrementAndGet();
+	}
+
+	@EventHandler
+	private void onPlayerDeafenChange(VocalPlayerDeafenChangePostEvent event) {
+		if (event.getPlayer().getServer().equals(server))
+			stateVersion.incrementAndGet();
 	}
 
 	@EventHandler
@@ -85,8 +161,11 @@ public class ServerPlayerList implements IServerPlayerList, IEventListener {
 
 		lock.lock();
 		try {
+			Map<String, IVocalPlayer> players = new LinkedHashMap<String, IVocalPlayer>(snapshot.players);
 			IVocalPlayer player = players.remove(event.getOldName());
 			players.put(player.getName(), player);
+			identifiers.put(((VocalPlayer) player).getId(), player);
+			publish(players);
 		} finally {
 			lock.unlock();
 		}
@@ -116,6 +195,16 @@ public class ServerPlayerList implements IServerPlayerList, IEventListener {
 		removePlayer(event.getClient().getPlayer());
 	}
 
+	/**
+	 * Publishes a new snapshot of the players. Must be called while holding the lock.
+	 * 
+	 * @param players The new players of this list.
+	 */
+	private void publish(Map<String, IVocalPlayer> players) {
+		snapshot = new Snapshot(snapshot.epoch + 1, players);
+		stateVersion.incrementAndGet();
+	}
+
 	/**
 	 * Thread safe operation that consists in adding the given player to this list.
 	 * 
@@ -124,7 +213,18 @@ public class ServerPlayerList implements IServerPlayerList, IEventListener {
 	private void addPlayer(IVocalPlayer player) {
 		lock.lock();
 		try {
+			// The player of a resumed session is already registered.
+			if (snapshot.players.get(player.getName()) == player)
+				return;
+
+			Map<String, IVocalPlayer> players = new LinkedHashMap<String, IVocalPlayer>(snapshot.players);
 			players.put(player.getName(), player);
+			identifiers.put(((VocalPlayer) player).getId(), player);
+
+			// Players are numbered in the order of registration so that the configuration can be sent page by page.
+			((VocalPlayer) player).setRegistration(registration);
+			registrations.put(registration++, player);
+			publish(players);
 		} finally {
 			lock.unlock();
 		}
@@ -140,10 +240,29 @@ public class ServerPlayerList implements IServerPlayerList, IEventListener {
 	private void removePlayer(IVocalPlayer player) {
 		lock.lock();
 		try {
-			if (players.remove(player.getName()) != null)
-				EventManager.callEvent(new VocalServerPlayerRemovePostEvent(this, player));
+			identifiers.remove(((VocalPlayer) player).getId(), player);
+			registrations.remove(((VocalPlayer) player).getRegistration(), player);
+			if (!snapshot.players.containsKey(player.getName()))
+				return;
+
+			Map<String, IVocalPlayer> players = new LinkedHashMap<String, IVocalPlayer>(snapshot.players);
+			players.remove(player.getName());
+			publish(players);
+			EventManager.callEvent(new VocalServerPlayerRemovePostEvent(this, player));
 		} finally {
 			lock.unlock();
 		}
 	}
+
+	private static class Snapshot {
+		private final long epoch;
+		private final Map<String, IVocalPlayer> players;
+		private final List<IVocalPlayer> list;
+
+		private Snapshot(long epoch, Map<String, IVocalPlayer> players) {
+			this.epoch = epoch;
+			this.players = Collections.unmodifiableMap(players);
+			this.list = Collections.unmodifiableList(new ArrayList<IVocalPlayer>(players.values()));
+		}
+	}
 }
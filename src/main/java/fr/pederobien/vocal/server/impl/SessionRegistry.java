@@ -0,0 +1,249 @@
+package fr.pederobien.vocal.server.impl;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import fr.pederobien.utils.event.EventManager;
+import fr.pederobien.vocal.common.impl.VocalErrorCode;
+import fr.pederobien.vocal.server.event.VocalClientDisconnectPostEvent;
+import fr.pederobien.vocal.server.interfaces.IVocalPlayer;
+
+public class SessionRegistry {
+	/**
+	 * The default time, in milliseconds, during which a player whose the connection has been lost can resume its session.
+	 */
+	public static final int DEFAULT_GRACE_PERIOD = 10000;
+
+	/**
+	 * The number of random bytes of a session token.
+	 */
+	private static final int TOKEN_LENGTH = 16;
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	private Map<String, Session> sessions;
+	private ScheduledExecutorService scheduler;
+	private volatile int gracePeriod;
+
+	/**
+	 * Creates a registry of suspended sessions. When the connection of a joined client is lost, its player remains registered on the
+	 * server during a grace period, provided a session token has been given to the client. Before the end of the grace period, a new
+	 * client claims the session by sending the token in a RESUME frame, then joins the server with the name of the player from the same
+	 * host. The player and its state (mute, deafen and mute by) are then given to the new client, followed by the changes of the
+	 * server since the last state acknowledged by the previous client, or by nothing if these changes are no more known: the client
+	 * then requests the whole server configuration. Otherwise the client is disconnected.
+	 * 
+	 * @param name The name of the server, used to name the thread of this registry.
+	 */
+	public SessionRegistry(String name) {
+		sessions = new ConcurrentHashMap<String, Session>();
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, String.format("%s_SessionRegistry", name));
+			thread.setDaemon(true);
+			return thread;
+		});
+		gracePeriod = DEFAULT_GRACE_PERIOD;
+	}
+
+	/**
+	 * Creates a token that cannot be guessed, used by a client to resume the session of its player. For internal use only.
+	 * 
+	 * @return A new session token.
+	 */
+	public static String createToken() {
+		byte[] bytes = new byte[TOKEN_LENGTH];
+		RANDOM.nextBytes(bytes);
+
+		StringBuilder builder = new StringBuilder(2 * TOKEN_LENGTH);
+		for (byte b : bytes)
+			builder.append(String.format("%02x", b));
+		return builder.toString();
+	}
+
+	/**
+	 * @return The time, in milliseconds, during which a player whose the connection has been lost can resume its session.
+	 */
+	public int getGracePeriod() {
+		return gracePeriod;
+	}
+
+	/**
+	 * Set the time during which a player whose the connection has been lost can resume its session. A grace period of 0 disables the
+	 * session resumption.
+	 * 
+	 * @param gracePeriod The grace period in milliseconds.
+	 */
+	public void setGracePeriod(int gracePeriod) {
+		this.gracePeriod = gracePeriod;
+	}
+
+	/**
+	 * Suspends the session of the given client whose the connection has been lost. For internal use only.
+	 * 
+	 * @param client The client whose the connection has been lost.
+	 * 
+	 * @return True if the session has been suspended, false if the client should be disconnected immediately.
+	 */
+	public boolean suspend(PlayerVocalClient client) {
+		IVocalPlayer player = client.getPlayer();
+		if (gracePeriod <= 0 || player == null)
+			return false;
+
+		// Without token, the session cannot be resumed.
+		String token = ((VocalPlayer) player).getSessionToken();
+		if (token == null)
+			return false;
+
+		Session session = new Session(client);
+		Session previous = sessions.put(token, session);
+		if (previous != null)
+			previous.expire();
+
+		session.expiry = scheduler.schedule(() -> {
+			if (sessions.remove(token, session))
+				session.expire();
+		}, gracePeriod, TimeUnit.MILLISECONDS);
+		return true;
+	}
+
+	/**
+	 * Claims the suspended session associated to the given token for the host of the given address, and binds the audio address of
+	 * the player to this address. The player is given back to the first client of this host that joins the server with its name
+	 * before the end of the grace period. If the changes since the state acknowledged by the previous client are still known, only
+	 * these changes are sent to the new client, otherwise it has to request the whole server configuration. For internal use only.
+	 * 
+	 * @param token   The token sent by the remote.
+	 * @param address The audio address of the remote.
+	 * 
+	 * @return An optional that contains the claim, an empty optional if no session is associated to the token.
+	 */
+	public Optional<Claim> claim(String token, InetSocketAddress address) {
+		Session session = sessions.get(token);
+		if (session == null)
+			return Optional.empty();
+
+		VocalPlayer player = (VocalPlayer) session.client.getPlayer();
+		long acknowledged = session.client.getAcknowledged();
+		session.acknowledged = ((VocalServer) player.getServer()).getBroadcaster().isAvailable(acknowledged) ? acknowledged : -1;
+		session.host = address.getAddress();
+		player.setUdpAddress(address);
+		return Optional.of(new Claim(player, session.acknowledged < 0));
+	}
+
+	/**
+	 * Gives to the new client the given player, if its session has been suspended and claimed by the host of the client. When the
+	 * claim has promised the changes since the state acknowledged by the previous client, they are sent to the client once it has
+	 * been answered. The token cannot be used twice, a new token is given to the client when it binds its audio address. For internal
+	 * use only.
+	 * 
+	 * @param player The player the new client joins the server with.
+	 * @param client The new client.
+	 * 
+	 * @return {@link VocalErrorCode#NONE} if the session has been resumed, {@link VocalErrorCode#REQUEST_CANCELLED} if the changes
+	 *         promised by the claim are no more known, in which case the session has to be claimed again, or
+	 *         {@link VocalErrorCode#PLAYER_ALREADY_EXISTS} if the session cannot be resumed by this client.
+	 */
+	public VocalErrorCode resume(IVocalPlayer player, PlayerVocalClient client) {
+		for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+			Session session = entry.getValue();
+			if (session.client.getPlayer() != player)
+				continue;
+
+			// The session must have been claimed with its token from the host of the new client.
+			if (session.host == null || !session.host.equals(client.getHost()) || client.isJoined())
+				return VocalErrorCode.PLAYER_ALREADY_EXISTS;
+
+			// The client expects the changes it has missed, the next claim asks it for the whole server configuration.
+			long acknowledged = session.acknowledged;
+			if (acknowledged >= 0 && !((VocalServer) player.getServer()).getBroadcaster().isAvailable(acknowledged)) {
+				session.host = null;
+				return VocalErrorCode.REQUEST_CANCELLED;
+			}
+
+			if (!sessions.remove(entry.getKey(), session))
+				return VocalErrorCode.PLAYER_ALREADY_EXISTS;
+
+			if (session.expiry != null)
+				session.expiry.cancel(false);
+
+			((VocalPlayer) player).clearSessionToken();
+			if (client.resume(player, acknowledged))
+				return VocalErrorCode.NONE;
+
+			session.expire();
+			return VocalErrorCode.PLAYER_ALREADY_EXISTS;
+		}
+		return VocalErrorCode.PLAYER_ALREADY_EXISTS;
+	}
+
+	/**
+	 * Disconnects every suspended client.
+	 */
+	public void clear() {
+		for (String token : sessions.keySet()) {
+			Session session = sessions.remove(token);
+			if (session != null) {
+				if (session.expiry != null)
+					session.expiry.cancel(false);
+				session.expire();
+			}
+		}
+	}
+
+	/**
+	 * Disconnects every suspended client and stops the thread of this registry.
+	 */
+	public void close() {
+		clear();
+		scheduler.shutdownNow();
+	}
+
+	public static class Claim {
+		private final IVocalPlayer player;
+		private final boolean isFull;
+
+		private Claim(IVocalPlayer player, boolean isFull) {
+			this.player = player;
+			this.isFull = isFull;
+		}
+
+		/**
+		 * @return The player of the claimed session.
+		 */
+		public IVocalPlayer getPlayer() {
+			return player;
+		}
+
+		/**
+		 * @return True if the client has to request the whole server configuration once resumed, false if it only receives the changes
+		 *         it has missed.
+		 */
+		public boolean isFull() {
+			return isFull;
+		}
+	}
+
+	private static class Session {
+		private PlayerVocalClient client;
+		private volatile InetAddress host;
+		private volatile long acknowledged;
+		private volatile ScheduledFuture<?> expiry;
+
+		private Session(PlayerVocalClient client) {
+			this.client = client;
+			acknowledged = -1;
+		}
+
+		private void expire() {
+			EventManager.callEvent(new VocalClientDisconnectPostEvent(client));
+			((VocalPlayer) client.getPlayer()).dispose();
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package fr.pederobien.vocal.server.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import fr.pederobien.utils.event.EventHandler;
+import fr.pederobien.utils.event.EventManager;
+import fr.pederobien.utils.event.EventPriority;
+import fr.pederobien.utils.event.IEventListener;
+import fr.pederobien.vocal.server.event.VocalServerPlayerAddPostEvent;
+import fr.pederobien.vocal.server.event.VocalServerPlayerRemovePostEvent;
+import fr.pederobien.vocal.server.interfaces.IPosition;
+import fr.pederobien.vocal.server.interfaces.IVocalPlayer;
+import fr.pederobien.vocal.server.interfaces.IVocalServer;
+
+public class SpatialGrid implements IEventListener {
+	private IVocalServer server;
+	private volatile Index index;
+	private Lock readLock, writeLock;
+
+	/**
+	 * Creates a uniform grid on the horizontal plane in order to find quickly the players close to a position. Each player registered
+	 * on the server is stored in the cell that contains its position and is moved each time its position changes.
+	 *
+	 * @param server   The server whose the players are indexed.
+	 * @param cellSize The length of a cell side, ideally close to the hearing radius.
+	 */
+	public SpatialGrid(IVocalServer server, double cellSize) {
+		this.server = server;
+
+		index = new Index(cellSize);
+		ReadWriteLock lock = new ReentrantReadWriteLock(true);
+		readLock = lock.readLock();
+		writeLock = lock.writeLock();
+
+		EventManager.registerListener(this);
+	}
+
+	/**
+	 * @return The length of a cell side.
+	 */
+	public double getCellSize() {
+		return index.cellSize;
+	}
+
+	/**
+	 * Set the length of a cell side. The players are moved to the cells of the new size, the grid is then not modified until all
+	 * players have been moved.
+	 *
+	 * @param cellSize The new length of a cell side, ideally close to the hearing radius.
+	 */
+	public void setCellSize(double cellSize) {
+		Index rebuilt = new Index(cellSize);
+
+		writeLock.lock();
+		try {
+			if (index.cellSize == cellSize)
+				return;
+
+			for (IVocalPlayer player : index.cells.keySet())
+				rebuilt.add(player);
+			index = rebuilt;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Moves the given player to the cell that contains its current position. Nothing happens if the player is not registered on the
+	 * server.
+	 *
+	 * @param player The player whose the position has changed.
+	 */
+	public void update(IVocalPlayer player) {
+		readLock.lock();
+		try {
+			index.update(player);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Get the players whose the position is possibly in the given radius around the center. The returned players are those stored in
+	 * the cells that intersect the square containing the circle, the exact distance is not checked.
+	 *
+	 * @param center The center of the area.
+	 * @param radius The radius of the area.
+	 *
+	 * @return A list that contains the candidate players.
+	 */
+	public List<IVocalPlayer> getCandidates(IPosition center, double radius) {
+		Index index = this.index;
+		List<IVocalPlayer> candidates = new ArrayList<IVocalPlayer>();
+		center = Position.getSnapshot(center);
+		int minX = index.getCell(center.getX() - radius), maxX = index.getCell(center.getX() + radius);
+		int minZ = index.getCell(center.getZ() - radius), maxZ = index.getCell(center.getZ() + radius);
+
+		for (int x = minX; x <= maxX; x++)
+			for (int z = minZ; z <= maxZ; z++) {
+				Set<IVocalPlayer> players = index.grid.get(getKey(x, z));
+				if (players != null)
+					candidates.addAll(players);
+			}
+		return candidates;
+	}
+
+	@EventHandler(priority = EventPriority.LOWEST)
+	private void onServerPlayerAdd(VocalServerPlayerAddPostEvent event) {
+		if (!event.getList().getServer().equals(server))
+			return;
+
+		readLock.lock();
+		try {
+			index.add(event.getPlayer());
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@EventHandler(priority = EventPriority.LOWEST)
+	private void onServerPlayerRemove(VocalServerPlayerRemovePostEvent event) {
+		if (!event.getList().getServer().equals(server))
+			return;
+
+		readLock.lock();
+		try {
+			index.remove(event.getPlayer());
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	private static long getKey(int x, int z) {
+		return ((long) x << 32) | (z & 0xFFFFFFFFL);
+	}
+
+	private static class Index {
+		private final double cellSize;
+		private final Map<Long, Set<IVocalPlayer>> grid;
+		private final Map<IVocalPlayer, Long> cells;
+
+		private Index(double cellSize) {
+			if (cellSize <= 0)
+				throw new IllegalArgumentException("The cell size must be strictly positive");
+
+			this.cellSize = cellSize;
+			grid = new ConcurrentHashMap<Long, Set<IVocalPlayer>>();
+			cells = new ConcurrentHashMap<IVocalPlayer, Long>();
+		}
+
+		private void add(IVocalPlayer player) {
+			long key = getKey(player.getPosition());
+			cells.compute(player, (p, old) -> {
+				if (old != null)
+					removeFromCell(old, p);
+				grid.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(p);
+				return key;
+			});
+		}
+
+		private void update(IVocalPlayer player) {
+			long key = getKey(player.getPosition());
+			cells.computeIfPresent(player, (p, old) -> {
+				if (old != key) {
+					removeFromCell(old, p);
+					grid.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(p);
+				}
+				return key;
+			});
+		}
+
+		private void remove(IVocalPlayer player) {
+			cells.computeIfPresent(player, (p, old) -> {
+				removeFromCell(old, p);
+				return null;
+			});
+		}
+
+		private void removeFromCell(long key, IVocalPlayer player) {
+			grid.computeIfPresent(key, (k, players) -> {
+				players.remove(player);
+				return players.isEmpty() ? null : players;
+			});
+		}
+
+		private int getCell(double coordinate) {
+			return (int) Math.floor(coordinate / cellSize);
+		}
+
+		private long getKey(IPosition position) {
+			position = Position.getSnapshot(position);
+			return SpatialGrid.getKey(getCell(position.getX()), getCell(position.getZ()));
+		}
+	}
+}
@@ -15,9 +15,15 @@ public enum SpeakBehavior {
 	 * Enumeration to tell to the vocal server that when a player is speaking, he cannot speaks by default to everyone currently
 	 * connected in the server.
 	 */
-	TO_NO_ONE("to_no_one");
+	TO_NO_ONE("to_no_one"),
 
-	public static final List<String> NAMES = Arrays.asList(TO_EVERYONE.getName(), TO_NO_ONE.getName());
+	/**
+	 * Enumeration to tell to the vocal server that when a player is speaking, he speaks by default to players close to him. The
+	 * volume of each receiver is computed by the server according to the player positions.
+	 */
+	PROXIMITY("proximity");
+
+	public static final List<String> NAMES = Arrays.asList(TO_EVERYONE.getName(), TO_NO_ONE.getName(), PROXIMITY.getName());
 
 	private String name;
 	private String friendlyName;
@@ -42,14 +48,17 @@ public enum SpeakBehavior {
 	}
 
 	/**
-	 * Get the speak behavior enumeration associated to the given name. If the name is not "to_no_one" then the returned behavior is
-	 * {@link #TO_EVERYONE}.
+	 * Get the speak behavior enumeration associated to the given name. If the name is neither "to_no_one" nor "proximity" then the
+	 * returned behavior is {@link #TO_EVERYONE}.
 	 * 
 	 * @param name The name of the behavior to retrieve.
 	 * 
 	 * @return The behavior associated to the given name.
 	 */
 	public static SpeakBehavior fromName(String name) {
-		return name == SpeakBehavior.TO_NO_ONE.getName() ? SpeakBehavior.TO_NO_ONE : SpeakBehavior.TO_EVERYONE;
+		for (SpeakBehavior behavior : values())
+			if (behavior.getName().equals(name))
+				return behavior;
+		return SpeakBehavior.TO_EVERYONE;
 	}
 }
@@ -0,0 +1,67 @@
+package fr.pederobien.vocal.server.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import fr.pederobien.vocal.common.impl.VolumeResult;
+import fr.pederobien.vocal.server.interfaces.IVocalPlayer;
+
+public class SpeakRoute {
+	private IVocalPlayer transmitter;
+	private long epoch, playersEpoch;
+	private Map<String, IVocalPlayer> players;
+	private Map<IVocalPlayer, VolumeResult> volumes;
+
+	/**
+	 * Creates an immutable snapshot of the players that can hear a transmitter.
+	 * 
+	 * @param transmitter  The speaking player.
+	 * @param epoch        The routing table epoch at which this route has been computed.
+	 * @param playersEpoch The epoch of the server players list at which this route has been computed.
+	 * @param players      A map that associates the name of a player that can hear the transmitter to its instance.
+	 * @param volumes      A map that associates for a receiver its default sound volume.
+	 */
+	public SpeakRoute(IVocalPlayer transmitter, long epoch, long playersEpoch, Map<String, IVocalPlayer> players, Map<IVocalPlayer, VolumeResult> volumes) {
+		this.transmitter = transmitter;
+		this.epoch = epoch;
+		this.playersEpoch = playersEpoch;
+		this.players = Collections.unmodifiableMap(new HashMap<String, IVocalPlayer>(players));
+		this.volumes = Collections.unmodifiableMap(new HashMap<IVocalPlayer, VolumeResult>(volumes));
+	}
+
+	/**
+	 * @return The speaking player.
+	 */
+	public IVocalPlayer getTransmitter() {
+		return transmitter;
+	}
+
+	/**
+	 * @return The routing table epoch at which this route has been computed.
+	 */
+	public long getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * @return The epoch of the server players list at which this route has been computed.
+	 */
+	public long getPlayersEpoch() {
+		return playersEpoch;
+	}
+
+	/**
+	 * @return An unmodifiable map that associates the name of a player that can hear the transmitter to its instance.
+	 */
+	public Map<String, IVocalPlayer> getPlayers() {
+		return players;
+	}
+
+	/**
+	 * @return An unmodifiable map that associates for a receiver its default sound volume.
+	 */
+	public Map<IVocalPlayer, VolumeResult> getVolumes() {
+		return volumes;
+	}
+}
@@ -0,0 +1,124 @@
+package fr.pederobien.vocal.server.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.pederobien.utils.event.EventHandler;
+import fr.pederobien.utils.event.EventManager;
+import fr.pederobien.utils.event.EventPriority;
+import fr.pederobien.utils.event.IEventListener;
+import fr.pederobien.vocal.common.impl.VolumeResult;
+import fr.pederobien.vocal.server.event.VocalPlayerDeafenChangePostEvent;
+import fr.pederobien.vocal.server.event.VocalPlayerMuteByChangePostEvent;
+import fr.pederobien.vocal.server.event.VocalPlayerMuteChangePostEvent;
+import fr.pederobien.vocal.server.event.VocalServerPlayerRemovePostEvent;
+import fr.pederobien.vocal.server.interfaces.IVocalPlayer;
+import fr.pederobien.vocal.server.interfaces.IVocalServer;
+
+public class SpeakRoutingTable implements IEventListener {
+	private IVocalServer server;
+	private Map<IVocalPlayer, SpeakRoute> routes;
+	private AtomicLong epoch;
+	private volatile SpeakBehavior speakBehavior;
+
+	/**
+	 * Creates a table that stores for each transmitter the players that can hear him. A route is computed the first time the
+	 * transmitter speaks and is reused until the server configuration changes, either the epoch of this table or the epoch of the
+	 * server players list.
+	 * 
+	 * @param server The server associated to this routing table.
+	 */
+	public SpeakRoutingTable(IVocalServer server) {
+		this.server = server;
+
+		routes = new ConcurrentHashMap<IVocalPlayer, SpeakRoute>();
+		epoch = new AtomicLong(0);
+		speakBehavior = server.getSpeakBehavior();
+
+		EventManager.registerListener(this);
+	}
+
+	/**
+	 * Get the route associated to the given transmitter. If the server configuration or the server speak behavior has changed since
+	 * the route has been computed, a new route is computed.
+	 * 
+	 * @param transmitter The speaking player.
+	 * 
+	 * @return The route that contains the players that can hear the transmitter.
+	 */
+	public SpeakRoute get(IVocalPlayer transmitter) {
+		// The default volumes of a route depend on the speak behavior.
+		SpeakBehavior behavior = server.getSpeakBehavior();
+		if (behavior != speakBehavior) {
+			speakBehavior = behavior;
+			invalidate();
+		}
+
+		SpeakRoute route = routes.get(transmitter);
+		if (route != null && route.getEpoch() == epoch.get() && route.getPlayersEpoch() == getPlayers().getEpoch())
+			return route;
+
+		route = compute(transmitter, behavior);
+		routes.put(transmitter, route);
+		return route;
+	}
+
+	/**
+	 * Invalidates every route of this table.
+	 */
+	public void invalidate() {
+		epoch.incrementAndGet();
+		routes.clear();
+	}
+
+	@EventHandler(priority = EventPriority.LOWEST)
+	private void onServerPlayerRemove(VocalServerPlayerRemovePostEvent event) {
+		// Other routes are refreshed thanks to the epoch of the players list.
+		if (event.getList().getServer().equals(server))
+			routes.remove(event.getPlayer());
+	}
+
+	@EventHandler(priority = EventPriority.LOWEST)
+	private void onPlayerMuteChange(VocalPlayerMuteChangePostEvent event) {
+		if (event.getPlayer().getServer().equals(server))
+			invalidate();
+	}
+
+	@EventHandler(priority = EventPriority.LOWEST)
+	private void onPlayerMuteByChange(VocalPlayerMuteByChangePostEvent event) {
+		if (event.getPlayer().getServer().equals(server))
+			invalidate();
+	}
+
+	@EventHandler(priority = EventPriority.LOWEST)
+	private void onPlayerDeafenChange(VocalPlayerDeafenChangePostEvent event) {
+		if (event.getPlayer().getServer().equals(server))
+			invalidate();
+	}
+
+	private SpeakRoute compute(IVocalPlayer transmitter, SpeakBehavior behavior) {
+		// Reading the epochs before the players so that a concurrent update makes this route immediately out of date.
+		long current = epoch.get();
+		long playersEpoch = getPlayers().getEpoch();
+		Map<String, IVocalPlayer> players = new HashMap<String, IVocalPlayer>();
+		Map<IVocalPlayer, VolumeResult> volumes = new HashMap<IVocalPlayer, VolumeResult>();
+		boolean toEveryone = behavior == SpeakBehavior.TO_EVERYONE;
+
+		for (IVocalPlayer receiver : getPlayers()) {
+			if (receiver.isDeafen() || transmitter.isMuteBy(receiver))
+				continue;
+
+			players.put(receiver.getName(), receiver);
+			if (toEveryone && !receiver.equals(transmitter))
+				volumes.put(receiver, new VolumeResult(1.0));
+		}
+
+		return new SpeakRoute(transmitter, current, playersEpoch, players, volumes);
+	}
+
+	private ServerPlayerList getPlayers() {
+		return (ServerPlayerList) server.getPlayers();
+	}
+}
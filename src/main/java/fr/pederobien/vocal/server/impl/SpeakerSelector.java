@@ -0,0 +1,241 @@
+package fr.pederobien.vocal.server.impl;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import fr.pederobien.vocal.common.impl.VolumeResult;
+import fr.pederobien.vocal.server.interfaces.IVocalPlayer;
+
+public class SpeakerSelector {
+	/**
+	 * The default ratio a transmitter must exceed the score of the weakest forwarded transmitter by in order to replace it.
+	 */
+	public static final double DEFAULT_HYSTERESIS = 1.5;
+
+	/**
+	 * The default time, in milliseconds, after which a forwarded transmitter that has not sent any sample releases its slot.
+	 */
+	public static final int DEFAULT_IDLE_TIME = 200;
+
+	private static final double SMOOTHING = 0.3;
+
+	private volatile int maxSpeakers;
+	private volatile double hysteresis;
+	private volatile int idleTime;
+	private Map<IVocalPlayer, Selection> selections;
+	private AtomicLong rejected;
+
+	/**
+	 * Creates a selector that limits the number of transmitters forwarded at the same time to each receiver. Transmitters are ranked
+	 * by the volume of their samples for the receiver, weighted by the energy of the samples. A transmitter
+	 * keeps its slot as long as it speaks, and only replaces a forwarded transmitter if it is clearly louder, so that the forwarded
+	 * transmitters do not change at each sample.
+	 */
+	public SpeakerSelector() {
+		maxSpeakers = 0;
+		hysteresis = DEFAULT_HYSTERESIS;
+		idleTime = DEFAULT_IDLE_TIME;
+		selections = new ConcurrentHashMap<IVocalPlayer, Selection>();
+		rejected = new AtomicLong(0);
+	}
+
+	/**
+	 * @return The maximum number of transmitters forwarded at the same time to a receiver, 0 if there is no limit.
+	 */
+	public int getMaxSpeakers() {
+		return maxSpeakers;
+	}
+
+	/**
+	 * Set the maximum number of transmitters forwarded at the same time to a receiver. The transmitters currently forwarded are
+	 * forgotten and selected again from the next samples.
+	 * 
+	 * @param maxSpeakers The maximum number of transmitters, 0 to forward every transmitter.
+	 */
+	public void setMaxSpeakers(int maxSpeakers) {
+		this.maxSpeakers = maxSpeakers;
+		selections.clear();
+	}
+
+	/**
+	 * @return The ratio a transmitter must exceed the score of the weakest forwarded transmitter by in order to replace it.
+	 */
+	public double getHysteresis() {
+		return hysteresis;
+	}
+
+	/**
+	 * Set the ratio a transmitter must exceed the score of the weakest forwarded transmitter by in order to replace it.
+	 * 
+	 * @param hysteresis The ratio, 1 to replace the weakest transmitter as soon as another transmitter is louder.
+	 */
+	public void setHysteresis(double hysteresis) {
+		this.hysteresis = Math.max(1, hysteresis);
+	}
+
+	/**
+	 * @return The time, in milliseconds, after which a forwarded transmitter that has not sent any sample releases its slot.
+	 */
+	public int getIdleTime() {
+		return idleTime;
+	}
+
+	/**
+	 * Set the time after which a forwarded transmitter that has not sent any sample releases its slot.
+	 * 
+	 * @param idleTime The time in milliseconds.
+	 */
+	public void setIdleTime(int idleTime) {
+		this.idleTime = idleTime;
+	}
+
+	/**
+	 * @return The number of samples that have not been forwarded because the receiver already had enough transmitters.
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * Indicates if an audio sample should be forwarded to a receiver.
+	 * 
+	 * @param sample   The audio sample to forward.
+	 * @param receiver The player that should hear the transmitter.
+	 * @param volume   The sound volume of the sample for the receiver.
+	 * 
+	 * @return True if the transmitter is one of the transmitters forwarded to the receiver, false otherwise.
+	 */
+	public boolean accept(PlayerSpeakSample sample, IVocalPlayer receiver, VolumeResult volume) {
+		int maxSpeakers = this.maxSpeakers;
+		if (maxSpeakers <= 0)
+			return true;
+
+		double score = volume.getGlobal() * sample.getEnergy();
+		Selection selection = selections.computeIfAbsent(receiver, player -> new Selection());
+		if (selection.accept(sample, score, maxSpeakers))
+			return true;
+
+		rejected.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * Releases the slot the transmitter of the given sample has just taken for a receiver, when the sample could not be sent to the
+	 * receiver. Nothing happens if the transmitter already had a slot before this sample.
+	 * 
+	 * @param sample   The audio sample that has not been sent.
+	 * @param receiver The player that should have heard the transmitter.
+	 */
+	public void release(PlayerSpeakSample sample, IVocalPlayer receiver) {
+		Selection selection = selections.get(receiver);
+		if (selection != null)
+			selection.release(sample);
+	}
+
+	/**
+	 * Removes the transmitters forwarded to the given receiver, and the given player from the transmitters forwarded to other
+	 * receivers.
+	 * 
+	 * @param player The player that has left the server.
+	 */
+	public void remove(IVocalPlayer player) {
+		selections.remove(player);
+		for (Selection selection : selections.values())
+			selection.remove(player);
+	}
+
+	private class Selection {
+		private Map<IVocalPlayer, Slot> slots;
+		private Lock lock;
+
+		private Selection() {
+			slots = new HashMap<IVocalPlayer, Slot>();
+			// Held for a few map operations on the audio path, fairness would only add handoffs between routing threads.
+			lock = new ReentrantLock();
+		}
+
+		private boolean accept(PlayerSpeakSample sample, double score, int maxSpeakers) {
+			IVocalPlayer transmitter = sample.getTransmitter();
+			int time = sample.getReceptionTime();
+
+			lock.lock();
+			try {
+				Slot slot = slots.get(transmitter);
+				if (slot != null) {
+					slot.update(score, time);
+					return true;
+				}
+
+				// Releasing the slots of transmitters that stopped speaking.
+				Slot weakest = null;
+				Iterator<Slot> iterator = slots.values().iterator();
+				while (iterator.hasNext()) {
+					Slot current = iterator.next();
+					if (time - current.time > idleTime)
+						iterator.remove();
+					else if (weakest == null || current.score < weakest.score)
+						weakest = current;
+				}
+
+				if (slots.size() >= maxSpeakers) {
+					if (score <= weakest.score * hysteresis)
+						return false;
+					slots.remove(weakest.transmitter);
+				}
+
+				slots.put(transmitter, new Slot(sample, score, time));
+				return true;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void release(PlayerSpeakSample sample) {
+			lock.lock();
+			try {
+				Slot slot = slots.get(sample.getTransmitter());
+				if (slot != null && slot.first == sample)
+					slots.remove(sample.getTransmitter());
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void remove(IVocalPlayer transmitter) {
+			lock.lock();
+			try {
+				slots.remove(transmitter);
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	private static class Slot {
+		private IVocalPlayer transmitter;
+		private PlayerSpeakSample first;
+		private double score;
+		private int time;
+
+		private Slot(PlayerSpeakSample first, double score, int time) {
+			this.transmitter = first.getTransmitter();
+			this.first = first;
+			this.score = score;
+			this.time = time;
+		}
+
+		private void update(double score, int time) {
+			// The slot is kept once a second sample has been accepted.
+			first = null;
+
+			// Smoothing the score so that a short silence does not make the transmitter lose its slot.
+			this.score = this.score * (1 - SMOOTHING) + score * SMOOTHING;
+			this.time = time;
+		}
+	}
+}
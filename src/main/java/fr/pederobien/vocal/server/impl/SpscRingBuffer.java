@@ -0,0 +1,83 @@
+package fr.pederobien.vocal.server.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SpscRingBuffer<T> {
+	private Object[] elements;
+	private int mask;
+	private AtomicLong head, tail;
+
+	/**
+	 * Creates a bounded queue for one producer thread and one consumer thread. Neither offering nor polling locks or allocates memory.
+	 * 
+	 * @param capacity The minimum number of elements this buffer can contain, rounded up to a power of two.
+	 */
+	public SpscRingBuffer(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		elements = new Object[size];
+		mask = size - 1;
+		head = new AtomicLong(0);
+		tail = new AtomicLong(0);
+	}
+
+	/**
+	 * Appends an element to this buffer. Must only be called by the producer thread.
+	 * 
+	 * @param element The element to append.
+	 * 
+	 * @return True if the element has been appended, false if the buffer is full.
+	 */
+	public boolean offer(T element) {
+		long current = tail.get();
+		if (current - head.get() >= elements.length)
+			return false;
+
+		elements[(int) current & mask] = element;
+
+		// Publishing the element to the consumer. A full volatile write, so that a read made by the producer after this call cannot be
+		// reordered before the publication.
+		tail.set(current + 1);
+		return true;
+	}
+
+	/**
+	 * Removes the oldest element of this buffer. Must only be called by the consumer thread.
+	 * 
+	 * @return The oldest element, null if the buffer is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	public T poll() {
+		long current = head.get();
+		if (current >= tail.get())
+			return null;
+
+		int index = (int) current & mask;
+		T element = (T) elements[index];
+		elements[index] = null;
+
+		// Giving back the slot to the producer.
+		head.lazySet(current + 1);
+		return element;
+	}
+
+	/**
+	 * @return The number of elements in this buffer.
+	 */
+	public int size() {
+		return (int) Math.max(0, tail.get() - head.get());
+	}
+
+	/**
+	 * @return True if this buffer does not contain any element.
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * @return The maximum number of elements this buffer can contain.
+	 */
+	public int capacity() {
+		return elements.length;
+	}
+}
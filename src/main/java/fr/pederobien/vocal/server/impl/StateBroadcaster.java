@@ -0,0 +1,463 @@
+package fr.pederobien.vocal.server.impl;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import fr.pederobien.utils.event.EventHandler;
+import fr.pederobien.utils.event.EventManager;
+import fr.pederobien.utils.event.EventPriority;
+import fr.pederobien.utils.event.IEventListener;
+import fr.pederobien.vocal.common.impl.VocalCallbackMessage;
+import fr.pederobien.vocal.common.interfaces.IVocalMessage;
+import fr.pederobien.vocal.server.event.VocalPlayerDeafenChangePostEvent;
+import fr.pederobien.vocal.server.event.VocalPlayerMuteByChangePostEvent;
+import fr.pederobien.vocal.server.event.VocalPlayerMuteChangePostEvent;
+import fr.pederobien.vocal.server.event.VocalPlayerNameChangePostEvent;
+import fr.pederobien.vocal.server.event.VocalServerPlayerAddPostEvent;
+import fr.pederobien.vocal.server.event.VocalServerPlayerRemovePostEvent;
+import fr.pederobien.vocal.server.interfaces.IRequestManager;
+import fr.pederobien.vocal.server.interfaces.IVocalPlayer;
+
+public class StateBroadcaster implements IEventListener {
+	/**
+	 * The number of changes kept in order to send to a resumed client the changes since the last state it has acknowledged.
+	 */
+	public static final int LOG_CAPACITY = 4096;
+
+	private static final int TIMEOUT = 1000;
+	private static final int ADD = 0, REMOVE = 1, RENAME = 2, STATE = 3, MUTE_BY = 4;
+
+	private VocalServer server;
+	private ClientList clients;
+	private volatile int coalescingWindow;
+	private Map<IVocalPlayer, PendingState> pending;
+	private AtomicBoolean isFlushScheduled;
+	private ScheduledExecutorService scheduler;
+	private Change[] log;
+	private long position;
+	private Lock lock;
+
+	/**
+	 * Creates a broadcaster that sends the server state changes to every joined client. For each change, the request and its bytes
+	 * are generated once per version of the communication protocol and the same bytes are written to the connection of every client
+	 * using this version. The last changes are kept in a log, so that a client resuming the session of its player only receives the
+	 * changes it has missed.
+	 * 
+	 * @param server  The server whose the state changes are sent.
+	 * @param clients The list that contains the clients of the server.
+	 */
+	public StateBroadcaster(VocalServer server, ClientList clients) {
+		this.server = server;
+		this.clients = clients;
+
+		coalescingWindow = 0;
+		pending = new ConcurrentHashMap<IVocalPlayer, PendingState>();
+		isFlushScheduled = new AtomicBoolean(false);
+		log = new Change[LOG_CAPACITY];
+		position = 0;
+		lock = new ReentrantLock(true);
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, String.format("%s_StateBroadcaster", server.getName()));
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		EventManager.registerListener(this);
+	}
+
+	/**
+	 * @return The time, in milliseconds, during which the mute and deafen changes are gathered before being sent, 0 if they are sent
+	 *         immediately.
+	 */
+	public int getCoalescingWindow() {
+		return coalescingWindow;
+	}
+
+	/**
+	 * Set the time during which the mute and deafen changes are gathered before being sent. Within this window, successive changes
+	 * of the same status of a player are sent as one update, or not at all if the status is back to its initial value, and the
+	 * updates of all players are sent together to each client. Events are still thrown for each change.
+	 * 
+	 * @param coalescingWindow The window in milliseconds, 0 to send each change immediately.
+	 */
+	public void setCoalescingWindow(int coalescingWindow) {
+		this.coalescingWindow = coalescingWindow;
+	}
+
+	/**
+	 * Stops the thread that sends the gathered changes and stops listening to the server events. The changes not sent yet are
+	 * discarded.
+	 */
+	public void close() {
+		EventManager.unregisterListener(this);
+		scheduler.shutdownNow();
+		pending.clear();
+	}
+
+	/**
+	 * Sends a request to every joined client. The request and its bytes are generated at most once for each version of the
+	 * communication protocol.
+	 * 
+	 * @param factory The function that creates the request for a specific version.
+	 */
+	public void broadcast(Function<IRequestManager, IVocalMessage> factory) {
+		broadcast(Collections.singletonList(new Update(null, -1, factory)));
+	}
+
+	/**
+	 * Sends the time of the server to every joined client. The clients that know the whole server configuration are expected to answer:
+	 * since the requests are processed in order, the answer means that the client has applied every change sent before the time, which
+	 * becomes the state acknowledged by the client.
+	 * 
+	 * @param time The time of the server.
+	 */
+	public void synchronizeTime(LocalTime time) {
+		Map<IRequestManager, IVocalMessage> messages = new HashMap<IRequestManager, IVocalMessage>(2);
+		lock.lock();
+		try {
+			long acknowledged = position;
+			for (PlayerVocalClient client : clients) {
+				if (!client.isJoined() || client.isResuming() || client.getRequestManager() == null)
+					continue;
+
+				IVocalMessage message = messages.computeIfAbsent(client.getRequestManager(), manager -> manager.onTimeSynchronization(time));
+				if (client.isConfigured())
+					client.send(message, args -> {
+						if (!args.isTimeout())
+							client.acknowledge(acknowledged);
+					}, TIMEOUT);
+				else
+					client.send(message);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Check if the changes made since the given state of the server are still in the log.
+	 * 
+	 * @param acknowledged The number of changes a client has applied, -1 if unknown.
+	 * 
+	 * @return True if the changes can be sent to the client, false if the client needs the whole server configuration.
+	 */
+	public boolean isAvailable(long acknowledged) {
+		lock.lock();
+		try {
+			return acknowledged >= 0 && acknowledged <= position && position - acknowledged <= log.length;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Sends to a resumed client the changes made since the state its previous client has acknowledged. For each player concerned by
+	 * these changes, only the difference between what the client knows and the current state of the player is sent. The updates that
+	 * have not been sent to the client while it was resuming are part of these changes, the client receives updates again once the
+	 * changes have been sent. For internal use only.
+	 * 
+	 * @param client       The resumed client.
+	 * @param acknowledged The number of changes the previous client has applied.
+	 * 
+	 * @return True if the changes have been sent, false if they are no more in the log.
+	 */
+	public boolean sendChanges(PlayerVocalClient client, long acknowledged) {
+		lock.lock();
+		try {
+			if (!isAvailable(acknowledged) || client.getRequestManager() == null)
+				return false;
+
+			IRequestManager manager = client.getRequestManager();
+			IVocalPlayer requester = client.getPlayer();
+
+			// The name of each player the client knew when it acknowledged the state, null if it did not know the player.
+			Map<IVocalPlayer, String> known = new LinkedHashMap<IVocalPlayer, String>();
+			for (long i = acknowledged; i < position; i++) {
+				Change change = log[(int) (i % log.length)];
+				if (change.kind == MUTE_BY && change.recipient != requester)
+					continue;
+				if (!known.containsKey(change.player))
+					known.put(change.player, change.kind == ADD ? null : change.name);
+			}
+
+			List<IVocalMessage> messages = new ArrayList<IVocalMessage>();
+
+			// Players that have left or have been renamed first, so that their old names are free.
+			for (Map.Entry<IVocalPlayer, String> entry : known.entrySet()) {
+				IVocalPlayer player = entry.getKey();
+				String name = entry.getValue();
+				if (name == null)
+					continue;
+
+				if (!name.equals(player.getName()))
+					messages.add(manager.onPlayerNameChange(name, player.getName()));
+				if (!isRegistered(player))
+					messages.add(manager.onServerPlayerRemove(player));
+			}
+
+			for (Map.Entry<IVocalPlayer, String> entry : known.entrySet()) {
+				IVocalPlayer player = entry.getKey();
+				if (!isRegistered(player))
+					continue;
+
+				if (entry.getValue() == null)
+					messages.add(manager.onServerPlayerAdd(player));
+				else {
+					messages.add(manager.onPlayerMuteChange(player));
+					messages.add(manager.onPlayerDeafenChange(player));
+				}
+				if (requester != null && player != requester && (entry.getValue() != null || player.isMuteBy(requester)))
+					messages.add(manager.onPlayerMuteByChange(player, requester));
+			}
+
+			for (IVocalMessage message : messages)
+				client.send(message);
+			client.setResumed(acknowledged);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Sends a request to every joined client and records the change in the log.
+	 * 
+	 * @param update The update that contains the function creating the request for a specific version.
+	 */
+	private void broadcast(Update update) {
+		broadcast(Collections.singletonList(update));
+	}
+
+	/**
+	 * Sends several requests to every joined client, one after the other, and records the changes in the log. Each request is created
+	 * at most once for each version of the communication protocol.
+	 * 
+	 * @param updates The updates that contain the functions creating the requests for a specific version.
+	 */
+	private void broadcast(List<Update> updates) {
+		if (updates.isEmpty())
+			return;
+
+		Map<IRequestManager, VocalCallbackMessage[]> messages = new HashMap<IRequestManager, VocalCallbackMessage[]>(2);
+		lock.lock();
+		try {
+			for (Update update : updates)
+				if (update.player != null)
+					append(new Change(update.player, update.kind, update.name, null));
+
+			for (PlayerVocalClient client : clients) {
+				// A resuming client receives these changes with the other changes it has missed.
+				if (!client.isJoined() || client.isResuming() || client.getRequestManager() == null)
+					continue;
+
+				VocalCallbackMessage[] batch = messages.computeIfAbsent(client.getRequestManager(), manager -> {
+					VocalCallbackMessage[] created = new VocalCallbackMessage[updates.size()];
+					for (int i = 0; i < created.length; i++) {
+						IVocalMessage message = updates.get(i).factory.apply(manager);
+						created[i] = message == null ? null : new VocalCallbackMessage(message, null, TIMEOUT);
+					}
+					return created;
+				});
+
+				for (int i = 0; i < batch.length; i++) {
+					VocalCallbackMessage message = batch[i];
+					client.getConfigurationCursor().execute(updates.get(i).player, () -> client.send(message));
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Records a change in the log, the oldest change is overwritten when the log is full. Must be called while holding the lock.
+	 * 
+	 * @param change The change to record.
+	 */
+	private void append(Change change) {
+		log[(int) (position % log.length)] = change;
+		position++;
+	}
+
+	/**
+	 * @param player The player to check.
+	 * 
+	 * @return True if the player is registered on the server, false otherwise.
+	 */
+	private boolean isRegistered(IVocalPlayer player) {
+		return server.getPlayers().get(player.getName()).orElse(null) == player;
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onServerPlayerAdd(VocalServerPlayerAddPostEvent event) {
+		if (!event.getList().getServer().equals(server))
+			return;
+
+		broadcast(new Update(event.getPlayer(), ADD, manager -> manager.onServerPlayerAdd(event.getPlayer())));
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onServerPlayerRemove(VocalServerPlayerRemovePostEvent event) {
+		if (!event.getList().getServer().equals(server))
+			return;
+
+		broadcast(new Update(event.getPlayer(), REMOVE, manager -> manager.onServerPlayerRemove(event.getPlayer())));
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onPlayerNameChange(VocalPlayerNameChangePostEvent event) {
+		if (!event.getPlayer().getServer().equals(server))
+			return;
+
+		broadcast(new Update(event.getPlayer(), RENAME, event.getOldName(), manager -> manager.onPlayerNameChange(event.getOldName(), event.getPlayer().getName())));
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onPlayerMuteChange(VocalPlayerMuteChangePostEvent event) {
+		if (!event.getPlayer().getServer().equals(server))
+			return;
+
+		if (coalescingWindow <= 0)
+			broadcast(new Update(event.getPlayer(), STATE, manager -> manager.onPlayerMuteChange(event.getPlayer())));
+		else
+			coalesce(event.getPlayer(), state -> {
+				if (state.oldMute == null)
+					state.oldMute = event.getOldMute();
+			});
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onPlayerMuteByChange(VocalPlayerMuteByChangePostEvent event) {
+		if (!event.getPlayer().getServer().equals(server))
+			return;
+
+		lock.lock();
+		try {
+			append(new Change(event.getPlayer(), MUTE_BY, event.getPlayer().getName(), event.getSource()));
+
+			// Only the player that mutes the target is notified.
+			clients.get(event.getSource().getName())
+					.filter(client -> client.isJoined() && !client.isResuming() && event.getSource().equals(client.getPlayer()) && client.getRequestManager() != null)
+					.ifPresent(client -> client.getConfigurationCursor().execute(event.getPlayer(),
+							() -> client.send(client.getRequestManager().onPlayerMuteByChange(event.getPlayer(), event.getSource()))));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onPlayerDeafenChange(VocalPlayerDeafenChangePostEvent event) {
+		if (!event.getPlayer().getServer().equals(server))
+			return;
+
+		if (coalescingWindow <= 0)
+			broadcast(new Update(event.getPlayer(), STATE, manager -> manager.onPlayerDeafenChange(event.getPlayer())));
+		else
+			coalesce(event.getPlayer(), state -> {
+				if (state.oldDeafen == null)
+					state.oldDeafen = event.getOldDeafen();
+			});
+	}
+
+	/**
+	 * Records the change of a player status and schedules the sending of the pending updates.
+	 * 
+	 * @param player The player whose the status has changed.
+	 * @param update The code to run in order to record the initial value of the status.
+	 */
+	private void coalesce(IVocalPlayer player, Consumer<PendingState> update) {
+		pending.compute(player, (p, state) -> {
+			PendingState result = state == null ? new PendingState() : state;
+			update.accept(result);
+			return result;
+		});
+
+		if (isFlushScheduled.compareAndSet(false, true))
+			scheduler.schedule(() -> flush(), coalescingWindow, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sends to every joined client the current status of each player that has changed since the last flush.
+	 */
+	private void flush() {
+		// Changes recorded from now on are sent by the next flush.
+		isFlushScheduled.set(false);
+
+		List<Update> updates = new ArrayList<Update>();
+		for (IVocalPlayer player : pending.keySet()) {
+			PendingState state = pending.remove(player);
+
+			// The player may have left the server during the window.
+			if (state == null || server.getPlayers().get(player.getName()).orElse(null) != player)
+				continue;
+
+			if (state.oldMute != null && state.oldMute != player.isMute())
+				updates.add(new Update(player, STATE, manager -> manager.onPlayerMuteChange(player)));
+			if (state.oldDeafen != null && state.oldDeafen != player.isDeafen())
+				updates.add(new Update(player, STATE, manager -> manager.onPlayerDeafenChange(player)));
+		}
+
+		broadcast(updates);
+	}
+
+	private static class Update {
+		private final IVocalPlayer player;
+		private final int kind;
+		private final String name;
+		private final Function<IRequestManager, IVocalMessage> factory;
+
+		/**
+		 * @param player  The player the update is about, null if the update is not about a specific player.
+		 * @param kind    The kind of change recorded in the log.
+		 * @param name    The name the clients know the player by before the update.
+		 * @param factory The function that creates the request for a specific version.
+		 */
+		private Update(IVocalPlayer player, int kind, String name, Function<IRequestManager, IVocalMessage> factory) {
+			this.player = player;
+			this.kind = kind;
+			this.name = name;
+			this.factory = factory;
+		}
+
+		private Update(IVocalPlayer player, int kind, Function<IRequestManager, IVocalMessage> factory) {
+			this(player, kind, player == null ? null : player.getName(), factory);
+		}
+	}
+
+	private static class Change {
+		private final IVocalPlayer player, recipient;
+		private final int kind;
+		private final String name;
+
+		/**
+		 * @param player    The player the change is about.
+		 * @param kind      The kind of change.
+		 * @param name      The name the clients knew the player by before the change.
+		 * @param recipient The only player notified of the change, null if every player is notified.
+		 */
+		private Change(IVocalPlayer player, int kind, String name, IVocalPlayer recipient) {
+			this.player = player;
+			this.kind = kind;
+			this.name = name;
+			this.recipient = recipient;
+		}
+	}
+
+	private static class PendingState {
+		private Boolean oldMute, oldDeafen;
+	}
+}
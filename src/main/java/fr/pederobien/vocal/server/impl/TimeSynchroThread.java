@@ -3,16 +3,16 @@ package fr.pederobien.vocal.server.impl;
 import java.time.LocalTime;
 
 public class TimeSynchroThread extends Thread {
-	private ClientList clients;
+	private StateBroadcaster broadcaster;
 
 	/**
 	 * Creates a thread in order to time-synchronize all the clients.
 	 * 
-	 * @param clients
+	 * @param broadcaster The broadcaster used to send the time to every joined client.
 	 */
-	public TimeSynchroThread(ClientList clients) {
+	public TimeSynchroThread(StateBroadcaster broadcaster) {
 		super("TimeSynchronizer");
-		this.clients = clients;
+		this.broadcaster = broadcaster;
 
 		setDaemon(true);
 		setPriority(MAX_PRIORITY);
@@ -23,7 +23,7 @@ public class TimeSynchroThread extends Thread {
 		while (!isInterrupted()) {
 			try {
 				Thread.sleep(5000);
-				clients.stream().parallel().forEach(client -> client.synchronize(LocalTime.now()));
+				broadcaster.synchronizeTime(LocalTime.now());
 			} catch (InterruptedException e) {
 				break;
 			}
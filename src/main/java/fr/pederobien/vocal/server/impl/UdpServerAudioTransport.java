@@ -0,0 +1,74 @@
+package fr.pederobien.vocal.server.impl;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+import fr.pederobien.communication.event.DataReceivedEvent;
+import fr.pederobien.communication.impl.AddressMessage;
+import fr.pederobien.communication.impl.UdpServer;
+import fr.pederobien.communication.interfaces.IUdpConnection;
+import fr.pederobien.utils.event.EventHandler;
+import fr.pederobien.utils.event.EventManager;
+import fr.pederobien.utils.event.EventPriority;
+import fr.pederobien.utils.event.IEventListener;
+import fr.pederobien.vocal.server.interfaces.IAudioTransport;
+
+public class UdpServerAudioTransport implements IAudioTransport, IEventListener {
+	private UdpServer udpServer;
+	private AtomicBoolean isOpened;
+	private BiConsumer<byte[], InetSocketAddress> receiver;
+
+	/**
+	 * Creates an audio transport based on the UDP server of the communication library. Each received datagram is given as is to the
+	 * receiver so that frames of every version of the communication protocol reach the audio pipeline.
+	 * 
+	 * @param name The server name.
+	 * @param port The port number on which audio samples are received.
+	 */
+	public UdpServerAudioTransport(String name, int port) {
+		udpServer = new UdpServer(name, port, () -> new AudioDatagramExtractor());
+		isOpened = new AtomicBoolean(false);
+	}
+
+	@Override
+	public void open(BiConsumer<byte[], InetSocketAddress> receiver) {
+		if (!isOpened.compareAndSet(false, true))
+			return;
+
+		this.receiver = receiver;
+		udpServer.connect();
+		EventManager.registerListener(this);
+	}
+
+	@Override
+	public void close() {
+		if (!isOpened.compareAndSet(true, false))
+			return;
+
+		EventManager.unregisterListener(this);
+		udpServer.disconnect();
+	}
+
+	@Override
+	public boolean isOpened() {
+		return isOpened.get();
+	}
+
+	@Override
+	public void send(byte[] bytes, InetSocketAddress address) {
+		IUdpConnection connection = udpServer.getConnection();
+		if (bytes == null || connection == null || connection.isDisposed())
+			return;
+
+		connection.send(new AddressMessage(bytes, address));
+	}
+
+	@EventHandler(priority = EventPriority.LOWEST)
+	private void onDataReceived(DataReceivedEvent event) {
+		if (!event.getConnection().equals(udpServer.getConnection()))
+			return;
+
+		receiver.accept(event.getBuffer(), event.getAddress());
+	}
+}
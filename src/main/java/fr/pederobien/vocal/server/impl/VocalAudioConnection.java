@@ -1,73 +1,331 @@
 package fr.pederobien.vocal.server.impl;
 
 import java.net.InetSocketAddress;
-import java.time.LocalTime;
+import java.nio.BufferUnderflowException;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import fr.pederobien.communication.event.DataReceivedEvent;
-import fr.pederobien.communication.interfaces.IUdpConnection;
 import fr.pederobien.utils.event.EventHandler;
 import fr.pederobien.utils.event.EventManager;
 import fr.pederobien.utils.event.EventPriority;
 import fr.pederobien.utils.event.IEventListener;
-import fr.pederobien.vocal.common.impl.VocalAddressMessage;
 import fr.pederobien.vocal.common.impl.VocalIdentifier;
 import fr.pederobien.vocal.common.impl.VolumeResult;
 import fr.pederobien.vocal.common.interfaces.IVocalMessage;
 import fr.pederobien.vocal.server.event.VocalPlayerSpeakEvent;
+import fr.pederobien.vocal.server.event.VocalServerPlayerRemovePostEvent;
+import fr.pederobien.vocal.server.impl.request.AudioFrameV20;
+import fr.pederobien.vocal.server.interfaces.IAudioRouter;
+import fr.pederobien.vocal.server.interfaces.IAudioTransport;
+import fr.pederobien.vocal.server.interfaces.IPosition;
 import fr.pederobien.vocal.server.interfaces.IVocalPlayer;
 import fr.pederobien.vocal.server.interfaces.IVocalServer;
 
 public class VocalAudioConnection extends AbstractVocalConnection implements IEventListener {
 	private static final double EPSILON = Math.pow(10, -5);
+	private IAudioTransport transport;
+	private Map<IVocalPlayer, ReceiverSendQueue> queues;
 
 	/**
 	 * Creates a vocal connection in order to send or receive requests from the remote.
 	 * 
-	 * @param server     The server associated to this connection.
-	 * @param connection The UDP connection with the remote.
+	 * @param server    The server associated to this connection.
+	 * @param transport The transport used to receive and send audio samples.
 	 */
-	public VocalAudioConnection(IVocalServer server, IUdpConnection connection) {
-		super(server, connection);
+	public VocalAudioConnection(IVocalServer server, IAudioTransport transport) {
+		super(server, null);
+		this.transport = transport;
 
+		queues = new ConcurrentHashMap<IVocalPlayer, ReceiverSendQueue>();
 		EventManager.registerListener(this);
 	}
 
-	@EventHandler(priority = EventPriority.HIGHEST)
-	private void onPlayerSpeak(VocalPlayerSpeakEvent event) {
-		IVocalPlayer transmitter = event.getTransmitter();
-		byte[] data = event.getData();
-		boolean isMono = event.isMono();
-		boolean isEncoded = event.isEncoded();
-		Map<IVocalPlayer, VolumeResult> volumes = new HashMap<IVocalPlayer, VolumeResult>();
+	/**
+	 * Send the audio sample of a transmitter whose protocol does not number its samples. The sample is numbered and timestamped by the
+	 * server.
+	 * 
+	 * @param route     The route that contains the players that can hear the transmitter.
+	 * @param data      The bytes array that represents an audio sample.
+	 * @param isMono    True if the audio signal is a mono signal, false otherwise.
+	 * @param isEncoded True if the audio sample has been encoded, false otherwise.
+	 */
+	public void onPlayerSpeak(SpeakRoute route, byte[] data, boolean isMono, boolean isEncoded) {
+		onPlayerSpeak(route, data, isMono, isEncoded, PlayerSpeakSample.nextSequence(route.getTransmitter()), PlayerSpeakSample.currentTime());
+	}
 
-		event.getVolumes().keySet().parallelStream().filter(receiver -> receiver.getUdpAddress() != null).forEach(receiver -> {
+	/**
+	 * Send the audio sample of a transmitter to each player that can hear him. If an audio router is registered on the server, the
+	 * volume of each receiver is asked to the router, otherwise a {@link VocalPlayerSpeakEvent} is thrown. When the server speak
+	 * behavior is {@link SpeakBehavior#PROXIMITY}, players out of the hearing radius are ignored.
+	 * 
+	 * @param route     The route that contains the players that can hear the transmitter.
+	 * @param data      The bytes array that represents an audio sample.
+	 * @param isMono    True if the audio signal is a mono signal, false otherwise.
+	 * @param isEncoded True if the audio sample has been encoded, false otherwise.
+	 * @param sequence  The number of the sample in the samples sent by the transmitter.
+	 * @param timestamp The time, in milliseconds, at which the sample has been sent by the transmitter.
+	 */
+	public void onPlayerSpeak(SpeakRoute route, byte[] data, boolean isMono, boolean isEncoded, int sequence, int timestamp) {
+		IVocalPlayer transmitter = route.getTransmitter();
+		boolean isProximity = getServer().getSpeakBehavior() == SpeakBehavior.PROXIMITY;
+		IAudioRouter router = getServer().getAudioRouter();
 
-			// Checking if the receiver can accept audio sample from the transmitter
-			if (receiver.isDeafen() || transmitter.isMuteBy(receiver))
-				return;
+		if (router == null) {
+			VocalPlayerSpeakEvent event = new VocalPlayerSpeakEvent(getServer(), route, data, isMono, isEncoded, sequence, timestamp);
+			if (isProximity)
+				event.getVolumes().putAll(getProximityVolumes(route));
 
-			// Checking volume before sending.
-			VolumeResult volume = event.getVolumes().get(receiver);
-			if (volume == null || volume.getGlobal() < EPSILON)
-				return;
+			EventManager.callEvent(event);
+			return;
+		}
 
-			volumes.put(receiver, volume);
-			send(getServer().getRequestManager().onPlayerSpeak(getVersion(), LocalTime.now(), transmitter, data, isMono, isEncoded, volume), receiver.getUdpAddress());
+		PlayerSpeakSample sample = new PlayerSpeakSample(getServer(), transmitter, data, isMono, isEncoded, sequence, timestamp);
+		Map<IVocalPlayer, VolumeResult> volumes = isProximity ? getProximityVolumes(route) : route.getVolumes();
+		Collection<IVocalPlayer> receivers = isProximity ? volumes.keySet() : route.getPlayers().values();
+		getExecutor().forEach(receivers, receiver -> {
+			// A player never hears his own audio samples, whatever the router returns.
+			if (receiver != transmitter)
+				sendTo(sample, receiver, router.getVolume(transmitter, receiver, volumes.get(receiver)));
+		});
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onPlayerSpeak(VocalPlayerSpeakEvent event) {
+		PlayerSpeakSample sample = new PlayerSpeakSample(getServer(), event.getTransmitter(), event.getData(), event.isMono(), event.isEncoded(), event.getSequence(),
+				event.getTimestamp());
+		Map<IVocalPlayer, VolumeResult> volumes = new ConcurrentHashMap<IVocalPlayer, VolumeResult>();
+
+		getExecutor().forEach(event.getVolumes().keySet(), receiver -> {
+			VolumeResult volume = event.getVolumes().get(receiver);
+			if (sendTo(sample, receiver, volume))
+				volumes.put(receiver, volume);
 		});
 		event.getVolumes().clear();
 		event.getVolumes().putAll(volumes);
 	}
 
-	@EventHandler(priority = EventPriority.LOWEST)
-	private void onUnexpectedDataReceived(DataReceivedEvent event) {
-		IVocalMessage request = checkReceivedRequest(event);
+	/**
+	 * Get the number of audio samples waiting to be sent to the given receiver.
+	 * 
+	 * @param receiver The player that receives audio samples.
+	 * 
+	 * @return The depth of the send queue associated to the receiver, 0 if there is no queue.
+	 */
+	public int getQueueDepth(IVocalPlayer receiver) {
+		ReceiverSendQueue queue = queues.get(receiver);
+		return queue == null ? 0 : queue.getDepth();
+	}
+
+	/**
+	 * Get the highest number of audio samples that have been waiting to be sent to the given receiver at the same time.
+	 * 
+	 * @param receiver The player that receives audio samples.
+	 * 
+	 * @return The maximum depth of the send queue associated to the receiver, 0 if there is no queue.
+	 */
+	public int getMaxQueueDepth(IVocalPlayer receiver) {
+		ReceiverSendQueue queue = queues.get(receiver);
+		return queue == null ? 0 : queue.getMaxDepth();
+	}
+
+	/**
+	 * @return The number of audio samples waiting to be sent to all receivers.
+	 */
+	public int getQueueDepth() {
+		int depth = 0;
+		for (ReceiverSendQueue queue : queues.values())
+			depth += queue.getDepth();
+		return depth;
+	}
+
+	/**
+	 * Get the number of audio samples that have not been sent to the given receiver because its send queue was full.
+	 * 
+	 * @param receiver The player that receives audio samples.
+	 * 
+	 * @return The number of dropped audio samples, 0 if there is no queue.
+	 */
+	public long getDroppedCount(IVocalPlayer receiver) {
+		ReceiverSendQueue queue = queues.get(receiver);
+		return queue == null ? 0 : queue.getDroppedCount();
+	}
+
+	/**
+	 * @return The number of audio samples sent to the receivers that are still registered.
+	 */
+	public long getSentCount() {
+		long sent = 0;
+		for (ReceiverSendQueue queue : queues.values())
+			sent += queue.getSentCount();
+		return sent;
+	}
+
+	/**
+	 * @return The number of datagrams sent to the receivers that are still registered.
+	 */
+	public long getDatagramCount() {
+		long datagrams = 0;
+		for (ReceiverSendQueue queue : queues.values())
+			datagrams += queue.getDatagramCount();
+		return datagrams;
+	}
+
+	/**
+	 * @return The number of audio samples dropped for the receivers that are still registered.
+	 */
+	public long getDroppedCount() {
+		long dropped = 0;
+		for (ReceiverSendQueue queue : queues.values())
+			dropped += queue.getDroppedCount();
+		return dropped;
+	}
+
+	@EventHandler
+	private void onServerPlayerRemove(VocalServerPlayerRemovePostEvent event) {
+		if (!event.getList().getServer().equals(getServer()))
+			return;
+
+		((VocalServer) getServer()).getSpeakerSelector().remove(event.getPlayer());
+		ReceiverSendQueue queue = queues.remove(event.getPlayer());
+		if (queue != null)
+			queue.clear();
+	}
+
+	/**
+	 * Handles a datagram received by the audio transport. This method is called by the routing threads of the audio pipeline. The
+	 * first bytes of the datagram are peeked in order to give the frames of the version 2.0 of the communication protocol to its
+	 * decoder without parsing them as vocal messages. Other datagrams are parsed by the message factory of the version 1.0. For
+	 * internal use only.
+	 * 
+	 * @param buffer  The bytes of the datagram.
+	 * @param address The address of the remote.
+	 */
+	public void onDataReceived(byte[] buffer, InetSocketAddress address) {
+		if (AudioFrameV20.isAudioFrame(buffer)) {
+			getServer().getRequestManager().answer(this, buffer, address);
+			return;
+		}
+
+		IVocalMessage request;
+		try {
+			request = VocalServerMessageFactory.parse(buffer);
+		} catch (IndexOutOfBoundsException | BufferUnderflowException | NegativeArraySizeException | IllegalArgumentException e) {
+			// Truncated or unknown header. Any other exception is reported by the audio pipeline.
+			return;
+		}
 
 		if (request == null || request.getHeader().getIdentifier() != VocalIdentifier.PLAYER_SPEAK_INFO)
 			return;
 
-		getServer().getRequestManager().answer(new RequestReceivedHolder(this, event, request));
+		getServer().getRequestManager().answer(new RequestReceivedHolder(this, address, request));
+	}
+
+	/**
+	 * @return The transport used to receive and send audio samples.
+	 */
+	public IAudioTransport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * Send the audio sample to a receiver if it can accept audio sample from the transmitter.
+	 * 
+	 * @param sample   The audio sample to send.
+	 * @param receiver The player that should hear the transmitter.
+	 * @param volume   The sound volume of the sample for the receiver.
+	 * 
+	 * @return True if the sample has been sent to the receiver, false otherwise.
+	 */
+	private boolean sendTo(PlayerSpeakSample sample, IVocalPlayer receiver, VolumeResult volume) {
+		if (receiver.getUdpAddress() == null)
+			return false;
+
+		// Checking if the receiver can accept audio sample from the transmitter
+		if (receiver.isDeafen() || sample.getTransmitter().isMuteBy(receiver))
+			return false;
+
+		// Checking volume before sending.
+		if (volume == null || volume.getGlobal() < EPSILON)
+			return false;
+
+		// Checking if a frame can be created for the protocol version of the receiver.
+		byte[] bytes = sample.getBytes(receiver, volume);
+		if (bytes == null)
+			return false;
+
+		// Checking if the transmitter is one of the loudest transmitters for the receiver.
+		SpeakerSelector selector = ((VocalServer) getServer()).getSpeakerSelector();
+		if (!selector.accept(sample, receiver, volume))
+			return false;
+
+		// Samples are appended in order by the thread that routed them and sent asynchronously, one at a time per receiver.
+		ReceiverSendQueue queue = getQueue(receiver);
+		if (queue != null && queue.offer(bytes, receiver.getUdpAddress()))
+			return true;
+
+		// A dropped sample does not keep the slot it has just taken from another transmitter.
+		selector.release(sample, receiver);
+		return false;
+	}
+
+	/**
+	 * Get or create the ordered send queue associated to the given receiver.
+	 * 
+	 * @param receiver The player that receives audio samples.
+	 * 
+	 * @return The send queue of the receiver, null if the receiver is no more registered on the server.
+	 */
+	private ReceiverSendQueue getQueue(IVocalPlayer receiver) {
+		ReceiverSendQueue queue = queues.get(receiver);
+		if (queue != null)
+			return queue;
+
+		queue = queues.computeIfAbsent(receiver, player -> new ReceiverSendQueue(getExecutor(), ReceiverSendQueue.DEFAULT_CAPACITY, (VocalPlayer) player, (bytes, address) -> send(bytes, address)));
+
+		// The route may have been read before the receiver left the server and its queue was removed. The players are published before
+		// the removal event is thrown, so a queue created after the removal is seen here and removed.
+		if (getServer().getPlayers().get(receiver.getName()).orElse(null) != receiver) {
+			if (queues.remove(receiver, queue))
+				queue.clear();
+			return null;
+		}
+		return queue;
+	}
+
+	/**
+	 * @return The executor used to send an audio sample to several receivers.
+	 */
+	private AudioExecutor getExecutor() {
+		return ((VocalServer) getServer()).getAudioExecutor();
+	}
+
+	/**
+	 * Computes the sound volume of each player of the route in the hearing radius of the transmitter. Only players close to the
+	 * transmitter according to the spatial index of the server are considered.
+	 * 
+	 * @param route The route that contains the players that can hear the transmitter.
+	 * 
+	 * @return A map that associates a receiver in the hearing radius to its volume.
+	 */
+	private Map<IVocalPlayer, VolumeResult> getProximityVolumes(SpeakRoute route) {
+		Map<IVocalPlayer, VolumeResult> volumes = new HashMap<IVocalPlayer, VolumeResult>();
+		IVocalPlayer transmitter = route.getTransmitter();
+		ProximityAttenuation attenuation = getServer().getProximityAttenuation();
+		SpatialGrid grid = ((VocalServer) getServer()).getSpatialGrid();
+
+		// The same position of the transmitter is used for every receiver.
+		IPosition position = Position.getSnapshot(transmitter.getPosition());
+		for (IVocalPlayer receiver : grid.getCandidates(position, attenuation.getRadius())) {
+			if (receiver.equals(transmitter) || receiver.getUdpAddress() == null || route.getPlayers().get(receiver.getName()) != receiver)
+				continue;
+
+			VolumeResult volume = attenuation.getVolume(position, receiver.getPosition());
+			if (volume != null)
+				volumes.put(receiver, volume);
+		}
+		return volumes;
 	}
 
 	/**
@@ -77,9 +335,22 @@ public class VocalAudioConnection extends AbstractVocalConnection implements IEv
 	 * @param address The address to which the message should be sent.
 	 */
 	protected void send(IVocalMessage message, InetSocketAddress address) {
-		if (message == null || getConnection() == null || getConnection().isDisposed())
+		if (message == null)
+			return;
+
+		transport.send(message.generate(), address);
+	}
+
+	/**
+	 * Send bytes already generated from a request to the remote.
+	 * 
+	 * @param bytes   The bytes of the request to send to the remote.
+	 * @param address The address to which the bytes should be sent.
+	 */
+	public void send(byte[] bytes, InetSocketAddress address) {
+		if (bytes == null)
 			return;
 
-		((IUdpConnection) getConnection()).send(new VocalAddressMessage(message, address));
+		transport.send(bytes, address);
 	}
 }
@@ -1,8 +1,12 @@
 package fr.pederobien.vocal.server.impl;
 
 import java.net.InetSocketAddress;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Stream;
@@ -17,16 +21,25 @@ import fr.pederobien.vocal.server.event.VocalPlayerMuteChangePostEvent;
 import fr.pederobien.vocal.server.event.VocalPlayerMuteChangePreEvent;
 import fr.pederobien.vocal.server.event.VocalPlayerNameChangePostEvent;
 import fr.pederobien.vocal.server.event.VocalPlayerNameChangePreEvent;
+import fr.pederobien.vocal.server.interfaces.IPosition;
+import fr.pederobien.vocal.server.interfaces.IRequestManager;
 import fr.pederobien.vocal.server.interfaces.IVocalPlayer;
 import fr.pederobien.vocal.server.interfaces.IVocalServer;
 
 public class VocalPlayer implements IVocalPlayer {
 	private IVocalServer server;
 	private String name;
+	private volatile int id;
+	private volatile long registration;
+	private volatile IRequestManager requestManager;
+	private AtomicInteger sequence;
+	private AtomicReference<String> sessionToken;
+	private volatile boolean isSessionTokenAcknowledged;
 	private boolean isMute, isDeafen;
-	private Map<IVocalPlayer, Boolean> isMuteBy;
+	private MuteByMatrix isMuteBy;
 	private ITcpConnection tcpConnection;
 	private InetSocketAddress udpAddress;
+	private IPosition position;
 	private Lock lock;
 
 	/**
@@ -43,10 +56,40 @@ public class VocalPlayer implements IVocalPlayer {
 
 		this.isMute = isMute;
 		this.isDeafen = isDeafen;
-		isMuteBy = new HashMap<IVocalPlayer, Boolean>();
+		isMuteBy = ((VocalServer) server).getMuteByMatrix();
+		id = isMuteBy.register();
+		registration = -1;
+		requestManager = server.getRequestManager().getRequestManager(1.0f).orElse(null);
+		sequence = new AtomicInteger(0);
+		sessionToken = new AtomicReference<String>();
+		position = new Position(() -> onPositionChange());
 		lock = new ReentrantLock(true);
 	}
 
+	/**
+	 * @return The compact identifier of this player on the server, -1 if the player has been disposed. For internal use only.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * @return The number given to this player when it has been registered on the server, -1 if it has never been registered. For
+	 *         internal use only.
+	 */
+	public long getRegistration() {
+		return registration;
+	}
+
+	/**
+	 * Set the number given to this player when it is registered on the server. For internal use only.
+	 * 
+	 * @param registration The registration number of this player.
+	 */
+	public void setRegistration(long registration) {
+		this.registration = registration;
+	}
+
 	@Override
 	public IVocalServer getServer() {
 		return server;
@@ -94,8 +137,10 @@ public class VocalPlayer implements IVocalPlayer {
 
 	@Override
 	public boolean isMuteBy(IVocalPlayer player) {
-		Boolean isMute = isMuteBy.get(player);
-		return isMute == null ? false : isMute;
+		if (!(player instanceof VocalPlayer))
+			return false;
+
+		return isMuteBy.get(id, ((VocalPlayer) player).getId());
 	}
 
 	@Override
@@ -114,7 +159,9 @@ public class VocalPlayer implements IVocalPlayer {
 
 	@Override
 	public Stream<IVocalPlayer> getMuteByPlayers() {
-		return isMuteBy.entrySet().stream().filter(entry -> entry.getValue()).map(entry -> entry.getKey());
+		// Only the players whose the bit is set in the row of this player are retrieved.
+		ServerPlayerList players = (ServerPlayerList) server.getPlayers();
+		return Arrays.stream(isMuteBy.getSources(id)).mapToObj(source -> players.get(source)).filter(Optional::isPresent).map(Optional::get);
 	}
 
 	@Override
@@ -137,6 +184,11 @@ public class VocalPlayer implements IVocalPlayer {
 		}
 	}
 
+	@Override
+	public IPosition getPosition() {
+		return position;
+	}
+
 	@Override
 	public InetSocketAddress getTcpAddress() {
 		return tcpConnection.getAddress();
@@ -165,6 +217,119 @@ public class VocalPlayer implements IVocalPlayer {
 		this.udpAddress = udpAddress;
 	}
 
+	/**
+	 * @return The requests manager associated to the version of the communication protocol used by the client of this player.
+	 */
+	public IRequestManager getRequestManager() {
+		return requestManager;
+	}
+
+	/**
+	 * Set the requests manager associated to the version of the communication protocol used by the client of this player. For
+	 * internal use only.
+	 * 
+	 * @param requestManager The requests manager used to send audio samples to this player.
+	 */
+	public void setRequestManager(IRequestManager requestManager) {
+		this.requestManager = requestManager;
+	}
+
+	/**
+	 * @return The number of the next audio sample sent by this player.
+	 */
+	public int nextSequence() {
+		return sequence.getAndIncrement();
+	}
+
+	/**
+	 * @return The token the client of this player should send in order to resume its session, null if no token has been given.
+	 */
+	public String getSessionToken() {
+		return sessionToken.get();
+	}
+
+	/**
+	 * Get the token the client of this player should send in order to resume its session, the token is created if necessary. The same
+	 * token is returned until the client acknowledges it, so that the token is sent again if the answer that contained it has been
+	 * lost. For internal use only.
+	 * 
+	 * @return An optional that contains the token, an empty optional if the client has acknowledged it.
+	 */
+	public Optional<String> getUnacknowledgedSessionToken() {
+		if (isSessionTokenAcknowledged)
+			return Optional.empty();
+
+		sessionToken.compareAndSet(null, SessionRegistry.createToken());
+		return Optional.ofNullable(sessionToken.get());
+	}
+
+	/**
+	 * Marks the token of this player as received by its client, it is no more sent to the client. For internal use only.
+	 * 
+	 * @param token The token sent back by the client.
+	 * 
+	 * @return True if the token is the one of this player, false otherwise.
+	 */
+	public boolean acknowledgeSessionToken(String token) {
+		if (!isSessionToken(token))
+			return false;
+
+		isSessionTokenAcknowledged = true;
+		return true;
+	}
+
+	/**
+	 * Check if the given token is the one the client of this player should send in order to resume its session. For internal use only.
+	 * 
+	 * @param token The token sent by a remote.
+	 * 
+	 * @return True if the token is the one of this player, false otherwise.
+	 */
+	public boolean isSessionToken(String token) {
+		String expected = sessionToken.get();
+		if (expected == null || token == null)
+			return false;
+
+		// The comparison does not depend on the number of matching characters.
+		return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Invalidates the token of this player so that a new token can be given. For internal use only.
+	 */
+	public void clearSessionToken() {
+		sessionToken.set(null);
+		isSessionTokenAcknowledged = false;
+	}
+
+	/**
+	 * Reserves a new identifier for this player if its identifier has been released, when the player joins the server again. For
+	 * internal use only.
+	 */
+	public void register() {
+		if (id < 0)
+			id = isMuteBy.register();
+	}
+
+	/**
+	 * Release the identifier of this player in order to be reused by another player. The mute by statuses of this player, its audio
+	 * address and its session token are lost. For internal use only.
+	 */
+	public void dispose() {
+		isMuteBy.unregister(id);
+		id = -1;
+		udpAddress = null;
+		clearSessionToken();
+	}
+
+	/**
+	 * Moves this player in the spatial index of the server.
+	 */
+	private void onPositionChange() {
+		if (server instanceof VocalServer)
+			((VocalServer) server).getSpatialGrid().update(this);
+	}
+
 	/**
 	 * Update the muteBy status of this player for a source player.
 	 * 
@@ -172,17 +337,12 @@ public class VocalPlayer implements IVocalPlayer {
 	 * @param isMute The new player's mute by status.
 	 */
 	private void setMuteBy0(IVocalPlayer source, boolean isMute) {
-		Boolean status = isMuteBy.get(source);
-		boolean oldMute = status == null ? false : status;
-		if (oldMute == isMute)
+		if (!(source instanceof VocalPlayer))
 			return;
 
-		lock.lock();
-		try {
-			isMuteBy.put(source, isMute);
-		} finally {
-			lock.unlock();
-		}
+		boolean oldMute = isMuteBy.set(id, ((VocalPlayer) source).getId(), isMute);
+		if (oldMute == isMute)
+			return;
 
 		EventManager.callEvent(new VocalPlayerMuteByChangePostEvent(this, source, oldMute));
 	}
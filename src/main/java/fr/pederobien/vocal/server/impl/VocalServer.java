@@ -4,47 +4,100 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import fr.pederobien.communication.impl.TcpServer;
-import fr.pederobien.communication.impl.UdpServer;
 import fr.pederobien.utils.event.EventManager;
 import fr.pederobien.utils.event.IEventListener;
 import fr.pederobien.vocal.common.impl.VocalMessageExtractor;
 import fr.pederobien.vocal.server.impl.request.ServerRequestManager;
+import fr.pederobien.vocal.server.interfaces.IAudioRouter;
+import fr.pederobien.vocal.server.interfaces.IAudioTransport;
 import fr.pederobien.vocal.server.interfaces.IServerPlayerList;
 import fr.pederobien.vocal.server.interfaces.IServerRequestManager;
 import fr.pederobien.vocal.server.interfaces.IVocalServer;
 
 public class VocalServer implements IVocalServer, IEventListener {
+	/**
+	 * The default distance beyond which a transmitter cannot be heard when the speak behavior is {@link SpeakBehavior#PROXIMITY}.
+	 */
+	public static final double DEFAULT_HEARING_RADIUS = 50.0;
+
 	private TcpServer tcpServer;
-	private UdpServer udpServer;
+	private IAudioTransport audioTransport;
 	private VocalAudioConnection audioConnection;
 	private String name;
-	private AtomicBoolean isOpened;
+	private AtomicBoolean isOpened, isClosed;
 	private AtomicInteger port;
 	private IServerPlayerList players;
 	private IServerRequestManager serverRequestManager;
 	private ClientList clients;
+	private StateBroadcaster broadcaster;
 	private SpeakBehavior speakBehavior;
+	private ProximityAttenuation proximityAttenuation;
 	private TimeSynchroThread timeSynchroThread;
+	private SpeakRoutingTable routingTable;
+	private SpatialGrid spatialGrid;
+	private MuteByMatrix muteByMatrix;
+	private AudioExecutor audioExecutor;
+	private AudioPipeline audioPipeline;
+	private SpeakerSelector speakerSelector;
+	private SessionRegistry sessions;
+	private volatile IAudioRouter audioRouter;
+	private volatile int bundlingWindow;
 
 	/**
-	 * Creates a server for vocal communication between several players.
+	 * Creates a server for vocal communication between several players. The audio samples are sent using as many threads as available
+	 * processors.
 	 * 
 	 * @param name          The server name.
 	 * @param port          The server port number for the UDP and TCP communication.
 	 * @param speakBehavior the default server behavior when a player is speaking.
 	 */
 	public VocalServer(String name, int port, SpeakBehavior speakBehavior) {
+		this(name, port, speakBehavior, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a server for vocal communication between several players.
+	 * 
+	 * @param name          The server name.
+	 * @param port          The server port number for the UDP and TCP communication.
+	 * @param speakBehavior the default server behavior when a player is speaking.
+	 * @param parallelism   The number of threads dedicated to send an audio sample to several receivers.
+	 */
+	public VocalServer(String name, int port, SpeakBehavior speakBehavior, int parallelism) {
+		this(name, port, speakBehavior, parallelism, AudioTransportType.UDP_SERVER);
+	}
+
+	/**
+	 * Creates a server for vocal communication between several players.
+	 * 
+	 * @param name          The server name.
+	 * @param port          The server port number for the UDP and TCP communication.
+	 * @param speakBehavior the default server behavior when a player is speaking.
+	 * @param parallelism   The number of threads dedicated to send an audio sample to several receivers.
+	 * @param transportType The type of the transport used to receive and send audio samples.
+	 */
+	public VocalServer(String name, int port, SpeakBehavior speakBehavior, int parallelism, AudioTransportType transportType) {
 		this.name = name;
 		this.speakBehavior = speakBehavior;
+		this.proximityAttenuation = new ProximityAttenuation(DEFAULT_HEARING_RADIUS, ProximityAttenuation.LINEAR, radius -> spatialGrid.setCellSize(radius));
 
 		this.port = new AtomicInteger(port);
 		tcpServer = new TcpServer(getName(), getPort(), () -> new VocalMessageExtractor(), true);
-		udpServer = new UdpServer(getName(), getPort(), () -> new VocalMessageExtractor());
+		audioTransport = transportType.create(getName(), getPort());
 		isOpened = new AtomicBoolean(false);
+		isClosed = new AtomicBoolean(false);
 		players = new ServerPlayerList(this);
 		serverRequestManager = new ServerRequestManager(this);
 		clients = new ClientList(this);
-		timeSynchroThread = new TimeSynchroThread(clients);
+		broadcaster = new StateBroadcaster(this, clients);
+		timeSynchroThread = new TimeSynchroThread(broadcaster);
+		routingTable = new SpeakRoutingTable(this);
+		spatialGrid = new SpatialGrid(this, DEFAULT_HEARING_RADIUS);
+		muteByMatrix = new MuteByMatrix();
+		audioExecutor = new AudioExecutor(name, parallelism);
+		audioPipeline = new AudioPipeline(name, AudioPipeline.DEFAULT_CAPACITY, (buffer, address) -> audioConnection.onDataReceived(buffer, address));
+		sessions = new SessionRegistry(name);
+		speakerSelector = new SpeakerSelector();
 
 		EventManager.registerListener(this);
 	}
@@ -59,14 +112,32 @@ public class VocalServer implements IVocalServer, IEventListener {
 		return speakBehavior;
 	}
 
+	@Override
+	public ProximityAttenuation getProximityAttenuation() {
+		return proximityAttenuation;
+	}
+
 	@Override
 	public void open() {
+		// The threads and the executors stopped by close() are not created again.
+		if (isClosed.get())
+			throw new IllegalStateException("A closed server cannot be opened again");
+
 		if (!isOpened.compareAndSet(false, true))
 			return;
 
+		audioConnection = new VocalAudioConnection(this, audioTransport);
+		audioPipeline.open();
+		try {
+			audioTransport.open((buffer, address) -> audioPipeline.submit(buffer, address));
+		} catch (RuntimeException e) {
+			audioPipeline.close();
+			EventManager.unregisterListener(audioConnection);
+			isOpened.set(false);
+			throw e;
+		}
+
 		tcpServer.connect();
-		udpServer.connect();
-		audioConnection = new VocalAudioConnection(this, udpServer.getConnection());
 		clients.clear();
 		timeSynchroThread.start();
 	}
@@ -76,9 +147,19 @@ public class VocalServer implements IVocalServer, IEventListener {
 		if (!isOpened.compareAndSet(true, false))
 			return;
 
+		isClosed.set(true);
+
 		tcpServer.disconnect();
-		udpServer.disconnect();
+		audioTransport.close();
+		audioPipeline.close();
+		audioExecutor.shutdown();
+		EventManager.unregisterListener(audioConnection);
 		timeSynchroThread.interrupt();
+		broadcaster.close();
+		sessions.close();
+		routingTable.invalidate();
+		EventManager.unregisterListener(routingTable);
+		EventManager.unregisterListener(spatialGrid);
 		EventManager.unregisterListener(clients);
 	}
 
@@ -102,6 +183,98 @@ public class VocalServer implements IVocalServer, IEventListener {
 		return serverRequestManager;
 	}
 
+	@Override
+	public IAudioRouter getAudioRouter() {
+		return audioRouter;
+	}
+
+	@Override
+	public void setAudioRouter(IAudioRouter audioRouter) {
+		this.audioRouter = audioRouter;
+	}
+
+	/**
+	 * @return The table that stores for each transmitter the players that can hear him. For internal use only.
+	 */
+	public SpeakRoutingTable getRoutingTable() {
+		return routingTable;
+	}
+
+	/**
+	 * @return The index used to find the players close to a position. For internal use only.
+	 */
+	public SpatialGrid getSpatialGrid() {
+		return spatialGrid;
+	}
+
+	/**
+	 * @return The matrix that stores, for each player, the players for which he is mute. For internal use only.
+	 */
+	public MuteByMatrix getMuteByMatrix() {
+		return muteByMatrix;
+	}
+
+	/**
+	 * @return The broadcaster that sends the server state changes to every joined client.
+	 */
+	public StateBroadcaster getBroadcaster() {
+		return broadcaster;
+	}
+
+	/**
+	 * @return The registry of the sessions of players whose the connection has been lost recently.
+	 */
+	public SessionRegistry getSessions() {
+		return sessions;
+	}
+
+	/**
+	 * @return The list of clients connected to this server. For internal use only.
+	 */
+	public ClientList getClients() {
+		return clients;
+	}
+
+	/**
+	 * @return The executor dedicated to send an audio sample to several receivers.
+	 */
+	public AudioExecutor getAudioExecutor() {
+		return audioExecutor;
+	}
+
+	/**
+	 * @return The time, in milliseconds, during which the audio samples sent to a receiver are gathered in one datagram.
+	 */
+	public int getBundlingWindow() {
+		return bundlingWindow;
+	}
+
+	/**
+	 * Set the time during which the audio samples sent to a receiver are gathered before being sent. Within this window, the samples
+	 * of several transmitters are sent in as few datagrams as possible, each datagram being smaller than the maximum length supported
+	 * by the protocol version of the receiver. Receivers whose protocol version does not support bundles still get one datagram per
+	 * sample, without delay.
+	 * 
+	 * @param bundlingWindow The window in milliseconds, 0 to send each sample immediately.
+	 */
+	public void setBundlingWindow(int bundlingWindow) {
+		this.bundlingWindow = bundlingWindow;
+	}
+
+	/**
+	 * @return The selector that limits the number of transmitters forwarded at the same time to each receiver.
+	 */
+	public SpeakerSelector getSpeakerSelector() {
+		return speakerSelector;
+	}
+
+	/**
+	 * @return The pipeline that routes the audio samples received by the audio transport. For internal use only.
+	 */
+	public AudioPipeline getAudioPipeline() {
+		return audioPipeline;
+	}
+
 	/**
 	 * @return The TCP server on which configuration request are sent.
 	 */
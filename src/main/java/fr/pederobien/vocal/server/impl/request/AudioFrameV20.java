@@ -0,0 +1,395 @@
+package fr.pederobien.vocal.server.impl.request;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import fr.pederobien.vocal.common.impl.VolumeResult;
+
+public class AudioFrameV20 {
+	/**
+	 * The version of the communication protocol that introduced this frame format.
+	 */
+	public static final float VERSION = 2.0f;
+
+	/**
+	 * The first four bytes of each audio frame, used to distinguish an audio frame from a vocal message.
+	 */
+	public static final int MAGIC = 0x56434632;
+
+	/**
+	 * Frame type used by a client to get its session identifier, or the name of the player associated to a session identifier.
+	 */
+	public static final byte SESSION = 0;
+
+	/**
+	 * Frame type used by a client to send an audio sample to the server.
+	 */
+	public static final byte PLAYER_SPEAK_INFO = 1;
+
+	/**
+	 * Frame type used by the server to send an audio sample to a client.
+	 */
+	public static final byte PLAYER_SPEAK_SET = 2;
+
+	/**
+	 * Frame type used by the server to send several PLAYER_SPEAK_SET frames to a client in one datagram.
+	 */
+	public static final byte BUNDLE = 3;
+
+	/**
+	 * Frame type used by a client to get the next page of players of the server configuration, and by the server to describe the page
+	 * that has been sent over the TCP connection.
+	 */
+	public static final byte CONFIGURATION = 4;
+
+	/**
+	 * Frame type used by a client to acknowledge the session token it has received in a SESSION frame. The token is preceded by its
+	 * length (2 bytes).
+	 */
+	public static final byte SESSION_ACK = 5;
+
+	/**
+	 * Frame type used by a client to claim the suspended session associated to a token, and by the server to answer with the session
+	 * identifier and the name of the player. The client then joins the server with this name in order to get the player back.
+	 */
+	public static final byte RESUME = 6;
+
+	/**
+	 * The maximum length of a BUNDLE frame, chosen so that the datagram is not fragmented on a usual network path.
+	 */
+	public static final int MAX_BUNDLE_LENGTH = 1200;
+
+	/**
+	 * The number of bytes before the first frame of a BUNDLE frame: magic (4 bytes), type (1 byte) and number of frames (1 byte). Each
+	 * frame is preceded by its length (2 bytes).
+	 */
+	public static final int BUNDLE_HEADER_LENGTH = 6;
+
+	/**
+	 * The maximum number of frames in a BUNDLE frame.
+	 */
+	public static final int MAX_BUNDLE_COUNT = 255;
+
+	/**
+	 * The session identifier used by a client that does not know its session identifier yet. It is never given to a player, see
+	 * {@link fr.pederobien.vocal.server.impl.MuteByMatrix#MAX_ID}.
+	 */
+	public static final int NO_SESSION = 0xFFFF;
+
+	private static final int FLAG_MONO = 1, FLAG_ENCODED = 2, FLAG_LAST = 1, FLAG_FULL = 1;
+	private static final int TYPE = 4, FLAGS = 5, SESSION_ID = 6, SEQUENCE = 8, TIMESTAMP = 12, VOLUME = 16, LENGTH = 28, NAME = 8, CURSOR = 8;
+
+	/**
+	 * The length of a CONFIGURATION frame: magic (4 bytes), type (1 byte), flags (1 byte), session identifier (2 bytes) and cursor (8
+	 * bytes), followed in the answer of the server by the number of players of the page (2 bytes) and the number of players sent since
+	 * the first page (4 bytes).
+	 */
+	private static final int CONFIGURATION_REQUEST_LENGTH = 16, CONFIGURATION_ANSWER_LENGTH = 22;
+
+	/**
+	 * The number of bytes before the audio sample in a PLAYER_SPEAK_INFO or PLAYER_SPEAK_SET frame: magic (4 bytes), type (1 byte),
+	 * flags (1 byte), session identifier (2 bytes), sequence number (4 bytes), timestamp in ms (4 bytes), global, left and right
+	 * volumes (3 x 4 bytes) and length of the sample (2 bytes).
+	 */
+	public static final int HEADER_LENGTH = 30;
+
+	/**
+	 * Check if the given buffer starts as an audio frame.
+	 * 
+	 * @param buffer The bytes array received from the remote.
+	 * 
+	 * @return True if the buffer is an audio frame, false otherwise.
+	 */
+	public static boolean isAudioFrame(byte[] buffer) {
+		return buffer.length >= NAME && readInt(buffer, 0) == MAGIC;
+	}
+
+	/**
+	 * @param buffer An audio frame.
+	 * 
+	 * @return The type of the audio frame.
+	 */
+	public static byte getType(byte[] buffer) {
+		return buffer[TYPE];
+	}
+
+	/**
+	 * @param buffer An audio frame.
+	 * 
+	 * @return The session identifier of the audio frame.
+	 */
+	public static int getSession(byte[] buffer) {
+		return readShort(buffer, SESSION_ID);
+	}
+
+	/**
+	 * @param buffer A PLAYER_SPEAK_INFO or PLAYER_SPEAK_SET frame.
+	 * 
+	 * @return True if the audio signal is a mono signal, false otherwise.
+	 */
+	public static boolean isMono(byte[] buffer) {
+		return (buffer[FLAGS] & FLAG_MONO) != 0;
+	}
+
+	/**
+	 * @param buffer A PLAYER_SPEAK_INFO or PLAYER_SPEAK_SET frame.
+	 * 
+	 * @return True if the audio sample has been encoded, false otherwise.
+	 */
+	public static boolean isEncoded(byte[] buffer) {
+		return (buffer[FLAGS] & FLAG_ENCODED) != 0;
+	}
+
+	/**
+	 * @param buffer A PLAYER_SPEAK_INFO or PLAYER_SPEAK_SET frame.
+	 * 
+	 * @return The number of the sample in the samples sent by the transmitter.
+	 */
+	public static int getSequence(byte[] buffer) {
+		return readInt(buffer, SEQUENCE);
+	}
+
+	/**
+	 * @param buffer A PLAYER_SPEAK_INFO or PLAYER_SPEAK_SET frame.
+	 * 
+	 * @return The monotonic time, in milliseconds, at which the sample has been sent.
+	 */
+	public static int getTimestamp(byte[] buffer) {
+		return readInt(buffer, TIMESTAMP);
+	}
+
+	/**
+	 * @param buffer A PLAYER_SPEAK_INFO or PLAYER_SPEAK_SET frame.
+	 * 
+	 * @return The length of the audio sample of the frame, -1 if the frame is malformed.
+	 */
+	public static int getDataLength(byte[] buffer) {
+		if (buffer.length < HEADER_LENGTH)
+			return -1;
+
+		int length = readShort(buffer, LENGTH);
+		return buffer.length < HEADER_LENGTH + length ? -1 : length;
+	}
+
+	/**
+	 * @param buffer A SESSION frame.
+	 * 
+	 * @return The player name of the frame, an empty string if there is no name.
+	 */
+	public static String getName(byte[] buffer) {
+		return readString(buffer, NAME);
+	}
+
+	/**
+	 * @param buffer A SESSION frame, in which the token follows the player name, a SESSION_ACK frame or a RESUME frame.
+	 * 
+	 * @return The session token of the frame, an empty string if there is no token.
+	 */
+	public static String getToken(byte[] buffer) {
+		if (getType(buffer) != SESSION)
+			return readString(buffer, NAME);
+
+		if (buffer.length < NAME + 2)
+			return "";
+		return readString(buffer, NAME + 2 + readShort(buffer, NAME));
+	}
+
+	/**
+	 * @param buffer A CONFIGURATION frame.
+	 * 
+	 * @return The registration number from which players are requested, -1 if the frame is malformed.
+	 */
+	public static long getCursor(byte[] buffer) {
+		if (buffer.length < CONFIGURATION_REQUEST_LENGTH)
+			return -1;
+
+		return (long) readInt(buffer, CURSOR) << 32 | readInt(buffer, CURSOR + 4) & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Creates a CONFIGURATION frame that describes the page of players sent to a client. The LAST flag is set when every player of the
+	 * server has been sent.
+	 * 
+	 * @param session  The session identifier of the player that requested the page.
+	 * @param next     The cursor to send in order to get the next page.
+	 * @param count    The number of players of the page.
+	 * @param streamed The number of players sent since the first page.
+	 * @param isLast   True if every player of the server has been sent, false otherwise.
+	 * 
+	 * @return The bytes of the frame.
+	 */
+	public static byte[] createConfiguration(int session, long next, int count, int streamed, boolean isLast) {
+		ByteBuffer buffer = ByteBuffer.allocate(CONFIGURATION_ANSWER_LENGTH);
+		buffer.putInt(MAGIC);
+		buffer.put(CONFIGURATION);
+		buffer.put((byte) (isLast ? FLAG_LAST : 0));
+		buffer.putShort((short) session);
+		buffer.putLong(next);
+		buffer.putShort((short) count);
+		buffer.putInt(streamed);
+		return buffer.array();
+	}
+
+	/**
+	 * Creates a PLAYER_SPEAK_SET frame whose the volumes are equal to 0.
+	 * 
+	 * @param session   The session identifier of the transmitter.
+	 * @param sequence  The number of the sample in the samples sent by the transmitter.
+	 * @param timestamp The monotonic time, in milliseconds, at which the sample has been received by the server.
+	 * @param isMono    True if the audio signal is a mono signal, false otherwise.
+	 * @param isEncoded True if the audio sample has been encoded, false otherwise.
+	 * @param data      The bytes array that represents an audio sample.
+	 * 
+	 * @return The bytes of the frame.
+	 */
+	public static byte[] createPlayerSpeakSet(int session, int sequence, int timestamp, boolean isMono, boolean isEncoded, byte[] data) {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + data.length);
+		buffer.putInt(MAGIC);
+		buffer.put(PLAYER_SPEAK_SET);
+		buffer.put((byte) ((isMono ? FLAG_MONO : 0) | (isEncoded ? FLAG_ENCODED : 0)));
+		buffer.putShort((short) session);
+		buffer.putInt(sequence);
+		buffer.putInt(timestamp);
+		buffer.putFloat(0).putFloat(0).putFloat(0);
+		buffer.putShort((short) data.length);
+		buffer.put(data);
+		return buffer.array();
+	}
+
+	/**
+	 * Get the number of bytes a frame takes in a BUNDLE frame.
+	 * 
+	 * @param frame The frame to gather.
+	 * 
+	 * @return The length of the frame and of its length prefix.
+	 */
+	public static int getBundledLength(byte[] frame) {
+		return 2 + frame.length;
+	}
+
+	/**
+	 * Creates a BUNDLE frame that gathers the given frames in the order of the list.
+	 * 
+	 * @param frames The PLAYER_SPEAK_SET frames to gather.
+	 * 
+	 * @return The bytes of the frame.
+	 */
+	public static byte[] createBundle(List<byte[]> frames) {
+		int length = BUNDLE_HEADER_LENGTH;
+		for (byte[] frame : frames)
+			length += getBundledLength(frame);
+
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		buffer.putInt(MAGIC);
+		buffer.put(BUNDLE);
+		buffer.put((byte) frames.size());
+		for (byte[] frame : frames) {
+			buffer.putShort((short) frame.length);
+			buffer.put(frame);
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Writes the given volume in a PLAYER_SPEAK_SET frame.
+	 * 
+	 * @param frame  The frame to update.
+	 * @param volume The different sound volume of the sample for the receiver.
+	 */
+	public static void setVolume(byte[] frame, VolumeResult volume) {
+		ByteBuffer buffer = ByteBuffer.wrap(frame);
+		buffer.putFloat(VOLUME, (float) volume.getGlobal());
+		buffer.putFloat(VOLUME + 4, (float) volume.getLeft());
+		buffer.putFloat(VOLUME + 8, (float) volume.getRight());
+	}
+
+	/**
+	 * Reads a big-endian integer without wrapping the buffer.
+	 */
+	private static int readInt(byte[] buffer, int offset) {
+		return (buffer[offset] & 0xFF) << 24 | (buffer[offset + 1] & 0xFF) << 16 | (buffer[offset + 2] & 0xFF) << 8 | (buffer[offset + 3] & 0xFF);
+	}
+
+	/**
+	 * Reads a big-endian unsigned short without wrapping the buffer.
+	 */
+	private static int readShort(byte[] buffer, int offset) {
+		return (buffer[offset] & 0xFF) << 8 | (buffer[offset + 1] & 0xFF);
+	}
+
+	/**
+	 * Reads a UTF-8 string preceded by its length (2 bytes), an empty string if the buffer is too short.
+	 */
+	private static String readString(byte[] buffer, int offset) {
+		if (buffer.length < offset + 2)
+			return "";
+
+		int length = readShort(buffer, offset);
+		if (buffer.length < offset + 2 + length)
+			return "";
+
+		return new String(buffer, offset + 2, length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Creates a SESSION frame that associates a session identifier to a player name.
+	 * 
+	 * @param session The session identifier of the player.
+	 * @param name    The player name.
+	 * 
+	 * @return The bytes of the frame.
+	 */
+	public static byte[] createSession(int session, String name) {
+		return createSession(session, name, null);
+	}
+
+	/**
+	 * Creates a SESSION frame that associates a session identifier to a player name. The token, if any, is written after the name and
+	 * is preceded by its length (2 bytes).
+	 * 
+	 * @param session The session identifier of the player.
+	 * @param name    The player name.
+	 * @param token   The token the player should use to resume its session, null to send no token.
+	 * 
+	 * @return The bytes of the frame.
+	 */
+	public static byte[] createSession(int session, String name, String token) {
+		return create(SESSION, 0, session, name, token);
+	}
+
+	/**
+	 * Creates a RESUME frame that gives the session identifier and the name of the player whose the session has been claimed. The FULL
+	 * flag is set when the client has to request the whole server configuration once resumed, instead of receiving the changes it
+	 * has missed.
+	 * 
+	 * @param session The session identifier of the player.
+	 * @param name    The player name.
+	 * @param isFull  True if the client has to request the whole server configuration, false otherwise.
+	 * 
+	 * @return The bytes of the frame.
+	 */
+	public static byte[] createResume(int session, String name, boolean isFull) {
+		return create(RESUME, isFull ? FLAG_FULL : 0, session, name, null);
+	}
+
+	/**
+	 * Creates a frame that contains a player name, followed by a token if any. Both are preceded by their length (2 bytes).
+	 */
+	private static byte[] create(byte type, int flags, int session, String name, String token) {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		byte[] tokenBytes = token == null ? new byte[0] : token.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.allocate(NAME + 2 + bytes.length + (token == null ? 0 : 2 + tokenBytes.length));
+		buffer.putInt(MAGIC);
+		buffer.put(type);
+		buffer.put((byte) flags);
+		buffer.putShort((short) session);
+		buffer.putShort((short) bytes.length);
+		buffer.put(bytes);
+		if (token != null) {
+			buffer.putShort((short) tokenBytes.length);
+			buffer.put(tokenBytes);
+		}
+		return buffer.array();
+	}
+}
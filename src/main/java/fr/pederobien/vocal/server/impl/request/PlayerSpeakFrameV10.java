@@ -0,0 +1,72 @@
+package fr.pederobien.vocal.server.impl.request;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fr.pederobien.vocal.common.impl.VolumeResult;
+import fr.pederobien.vocal.common.interfaces.IVocalMessage;
+import fr.pederobien.vocal.server.impl.PlayerSpeakSample;
+import fr.pederobien.vocal.server.interfaces.IPlayerSpeakFrame;
+import fr.pederobien.vocal.server.interfaces.IRequestManager;
+
+public class PlayerSpeakFrameV10 implements IPlayerSpeakFrame {
+	private IRequestManager manager;
+	private PlayerSpeakSample sample;
+	private Map<VolumeKey, byte[]> frames;
+
+	/**
+	 * Creates a PLAYER_SPEAK_SET frame for version 1.0. The layout of the message is defined by the message factory, that is why the
+	 * bytes are generated once for each distinct volume and shared by receivers.
+	 * 
+	 * @param manager The request manager used to create the messages.
+	 * @param sample  The sample that contains the properties shared by every receiver.
+	 */
+	public PlayerSpeakFrameV10(IRequestManager manager, PlayerSpeakSample sample) {
+		this.manager = manager;
+		this.sample = sample;
+
+		frames = new ConcurrentHashMap<VolumeKey, byte[]>();
+	}
+
+	@Override
+	public byte[] getBytes(VolumeResult volume) {
+		VolumeKey key = new VolumeKey(volume);
+		byte[] bytes = frames.get(key);
+		if (bytes != null)
+			return bytes;
+
+		IVocalMessage message = manager.onPlayerSpeak(sample.getTime(), sample.getTransmitter(), sample.getData(), sample.isMono(), sample.isEncoded(), volume);
+		bytes = message.generate();
+		byte[] previous = frames.putIfAbsent(key, bytes);
+		return previous == null ? bytes : previous;
+	}
+
+	private static class VolumeKey {
+		private double global, left, right;
+
+		private VolumeKey(VolumeResult volume) {
+			global = volume.getGlobal();
+			left = volume.getLeft();
+			right = volume.getRight();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+
+			if (!(obj instanceof VolumeKey))
+				return false;
+
+			VolumeKey other = (VolumeKey) obj;
+			return Double.compare(global, other.global) == 0 && Double.compare(left, other.left) == 0 && Double.compare(right, other.right) == 0;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = Double.hashCode(global);
+			result = 31 * result + Double.hashCode(left);
+			return 31 * result + Double.hashCode(right);
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package fr.pederobien.vocal.server.impl.request;
+
+import fr.pederobien.vocal.common.impl.VolumeResult;
+import fr.pederobien.vocal.server.impl.PlayerSpeakSample;
+import fr.pederobien.vocal.server.impl.VocalPlayer;
+import fr.pederobien.vocal.server.interfaces.IPlayerSpeakFrame;
+
+public class PlayerSpeakFrameV20 implements IPlayerSpeakFrame {
+	private byte[] template;
+
+	/**
+	 * Creates a PLAYER_SPEAK_SET frame for version 2.0. The frame is generated once, the bytes sent to a receiver are a copy of this
+	 * frame in which only the volume is written.
+	 * 
+	 * @param sample The sample that contains the properties shared by every receiver.
+	 */
+	public PlayerSpeakFrameV20(PlayerSpeakSample sample) {
+		int session = ((VocalPlayer) sample.getTransmitter()).getId();
+		template = AudioFrameV20.createPlayerSpeakSet(session, sample.getSequence(), sample.getTimestamp(), sample.isMono(), sample.isEncoded(), sample.getData());
+	}
+
+	@Override
+	public byte[] getBytes(VolumeResult volume) {
+		byte[] bytes = template.clone();
+		AudioFrameV20.setVolume(bytes, volume);
+		return bytes;
+	}
+}
@@ -0,0 +1,72 @@
+package fr.pederobien.vocal.server.impl.request;
+
+import java.util.Arrays;
+
+public class PlayerSpeakInfoV20 {
+	private byte[] buffer;
+	private int session, sequence, timestamp, length;
+	private boolean isMono, isEncoded;
+
+	/**
+	 * Reads the header of a PLAYER_SPEAK_INFO frame. The audio sample is not copied, this object refers to the given buffer.
+	 * 
+	 * @param buffer The bytes array received from the remote.
+	 * 
+	 * @return True if the frame is well formed, false otherwise.
+	 */
+	public boolean decode(byte[] buffer) {
+		length = AudioFrameV20.getDataLength(buffer);
+		if (length < 0)
+			return false;
+
+		this.buffer = buffer;
+		session = AudioFrameV20.getSession(buffer);
+		sequence = AudioFrameV20.getSequence(buffer);
+		timestamp = AudioFrameV20.getTimestamp(buffer);
+		isMono = AudioFrameV20.isMono(buffer);
+		isEncoded = AudioFrameV20.isEncoded(buffer);
+		return true;
+	}
+
+	/**
+	 * @return The session identifier of the transmitter.
+	 */
+	public int getSession() {
+		return session;
+	}
+
+	/**
+	 * @return The number of the sample in the samples sent by the transmitter.
+	 */
+	public int getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return The monotonic time, in milliseconds, at which the sample has been sent.
+	 */
+	public int getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return True if the audio signal is a mono signal, false otherwise.
+	 */
+	public boolean isMono() {
+		return isMono;
+	}
+
+	/**
+	 * @return True if the audio sample has been encoded, false otherwise.
+	 */
+	public boolean isEncoded() {
+		return isEncoded;
+	}
+
+	/**
+	 * @return A copy of the audio sample, independent from the received buffer.
+	 */
+	public byte[] copyData() {
+		return Arrays.copyOfRange(buffer, AudioFrameV20.HEADER_LENGTH, AudioFrameV20.HEADER_LENGTH + length);
+	}
+}
@@ -1,6 +1,8 @@
 package fr.pederobien.vocal.server.impl.request;
 
+import java.net.InetSocketAddress;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -9,6 +11,7 @@ import fr.pederobien.vocal.common.impl.VocalIdentifier;
 import fr.pederobien.vocal.common.interfaces.IVocalMessage;
 import fr.pederobien.vocal.server.impl.AbstractVocalConnection;
 import fr.pederobien.vocal.server.impl.RequestReceivedHolder;
+import fr.pederobien.vocal.server.impl.VocalAudioConnection;
 import fr.pederobien.vocal.server.impl.VocalServerMessageFactory;
 import fr.pederobien.vocal.server.interfaces.IRequestManager;
 import fr.pederobien.vocal.server.interfaces.IVocalServer;
@@ -44,6 +47,21 @@ public abstract class RequestManager implements IRequestManager {
 		return answer.apply(holder);
 	}
 
+	@Override
+	public void answer(VocalAudioConnection connection, byte[] buffer, InetSocketAddress address) {
+		// Audio frames that are not vocal messages are not supported by default.
+	}
+
+	@Override
+	public int getMaxBundleLength() {
+		return 0;
+	}
+
+	@Override
+	public List<byte[]> createBundles(List<byte[]> frames) {
+		return frames;
+	}
+
 	/**
 	 * @return The map that contains the code to run according to the identifier of the request sent by the remote.
 	 */
@@ -106,11 +124,10 @@ public abstract class RequestManager implements IRequestManager {
 	 * @return False if the connection is not an instance of the class, the function's result otherwise.
 	 */
 	protected <T extends AbstractVocalConnection> RunResult runIfInstanceof(RequestReceivedHolder holder, Class<T> clazz, Function<T, Boolean> function) {
-		try {
-			return new RunResult(true, function.apply(clazz.cast(holder.getConnection())));
-		} catch (ClassCastException e) {
+		if (!clazz.isInstance(holder.getConnection()))
 			return new RunResult(false, false);
-		}
+
+		return new RunResult(true, function.apply(clazz.cast(holder.getConnection())));
 	}
 
 	protected class RunResult {
@@ -5,7 +5,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
-import fr.pederobien.utils.event.EventManager;
 import fr.pederobien.vocal.common.impl.VocalErrorCode;
 import fr.pederobien.vocal.common.impl.VocalIdentifier;
 import fr.pederobien.vocal.common.impl.VolumeResult;
@@ -16,14 +15,20 @@ import fr.pederobien.vocal.common.impl.messages.v10.SetPlayerMuteStatusV10;
 import fr.pederobien.vocal.common.impl.messages.v10.SetPlayerNameV10;
 import fr.pederobien.vocal.common.impl.messages.v10.SetServerJoinV10;
 import fr.pederobien.vocal.common.interfaces.IVocalMessage;
-import fr.pederobien.vocal.server.event.VocalPlayerSpeakEvent;
+import fr.pederobien.vocal.server.impl.PlayerSpeakSample;
 import fr.pederobien.vocal.server.impl.PlayerVocalClient;
 import fr.pederobien.vocal.server.impl.RequestReceivedHolder;
+import fr.pederobien.vocal.server.impl.ServerPlayerList;
+import fr.pederobien.vocal.server.impl.SpeakRoute;
+import fr.pederobien.vocal.server.impl.VocalAudioConnection;
 import fr.pederobien.vocal.server.impl.VocalPlayer;
+import fr.pederobien.vocal.server.impl.VocalServer;
+import fr.pederobien.vocal.server.interfaces.IPlayerSpeakFrame;
 import fr.pederobien.vocal.server.interfaces.IVocalPlayer;
 import fr.pederobien.vocal.server.interfaces.IVocalServer;
 
 public class RequestManagerV10 extends RequestManager {
+	private volatile ServerConfiguration configuration;
 
 	/**
 	 * Creates a request manager associated to version 1.0 in order to modify the given server and answer to remote requests.
@@ -108,6 +113,11 @@ public class RequestManagerV10 extends RequestManager {
 		return create(getVersion(), VocalIdentifier.PLAYER_SPEAK_SET, time, transmitter.getName(), data, isMono, isEncoded, volume);
 	}
 
+	@Override
+	public IPlayerSpeakFrame createPlayerSpeakFrame(PlayerSpeakSample sample) {
+		return new PlayerSpeakFrameV10(this, sample);
+	}
+
 	/**
 	 * Creates a message that contains the current server configuration.
 	 * 
@@ -116,26 +126,38 @@ public class RequestManagerV10 extends RequestManager {
 	 * @return The server answer.
 	 */
 	private IVocalMessage getServerConfiguration(RequestReceivedHolder holder) {
-		List<Object> informations = new ArrayList<Object>();
-
-		// Number of players
-		informations.add(getServer().getPlayers().toList().size());
-
-		for (IVocalPlayer player : getServer().getPlayers()) {
-			// Player's name
-			informations.add(player.getName());
-
-			// Player's mute status
-			informations.add(player.isMute());
+		ServerConfiguration configuration = getConfiguration();
+		Object[] informations = configuration.properties.clone();
+
+		// Case when the connection corresponds to a player connection -> Needs to check if player is mute by the client player.
+		if (holder.getConnection() instanceof PlayerVocalClient) {
+			IVocalPlayer requester = ((PlayerVocalClient) holder.getConnection()).getPlayer();
+			if (requester != null)
+				for (int i = 0; i < configuration.players.length; i++)
+					informations[ServerConfiguration.MUTE_BY_OFFSET + i * ServerConfiguration.PLAYER_LENGTH] = configuration.players[i].isMuteBy(requester);
+		}
 
-			// Player's deafen status
-			informations.add(player.isDeafen());
+		return answer(getVersion(), holder.getRequest(), informations);
+	}
 
-			// Case when the connection corresponds to a player connection -> Needs to check if player is mute by the client player.
-			RunResult result = runIfInstanceof(holder, PlayerVocalClient.class, client -> player.isMuteBy(client.getPlayer()));
-			informations.add(result.getHasRun() ? result.getResult() : false);
-		}
-		return answer(getVersion(), holder.getRequest(), informations.toArray());
+	/**
+	 * Get the server configuration shared by every requester. The configuration is built again only if the server state has changed
+	 * since the last request.
+	 * 
+	 * @return The server configuration associated to the current server state.
+	 */
+	private ServerConfiguration getConfiguration() {
+		ServerPlayerList players = (ServerPlayerList) getServer().getPlayers();
+
+		// Reading the version before the players so that a concurrent update makes this configuration immediately out of date.
+		long version = players.getStateVersion();
+		ServerConfiguration configuration = this.configuration;
+		if (configuration != null && configuration.version == version)
+			return configuration;
+
+		configuration = new ServerConfiguration(version, players.toList());
+		this.configuration = configuration;
+		return configuration;
 	}
 
 	/**
@@ -149,8 +171,14 @@ public class RequestManagerV10 extends RequestManager {
 		SetServerJoinV10 request = (SetServerJoinV10) holder.getRequest();
 
 		Optional<IVocalPlayer> optPlayer = getServer().getPlayers().get(request.getPlayerName());
-		if (optPlayer.isPresent())
-			return answer(getVersion(), holder.getRequest(), VocalErrorCode.PLAYER_ALREADY_EXISTS);
+		if (optPlayer.isPresent()) {
+			// The player of a suspended session is given back to the client that has claimed the session with its token.
+			if (!(holder.getConnection() instanceof PlayerVocalClient))
+				return answer(getVersion(), holder.getRequest(), VocalErrorCode.PLAYER_ALREADY_EXISTS);
+
+			VocalErrorCode code = ((VocalServer) getServer()).getSessions().resume(optPlayer.get(), (PlayerVocalClient) holder.getConnection());
+			return code == VocalErrorCode.NONE ? answer(getVersion(), holder.getRequest()) : answer(getVersion(), holder.getRequest(), code);
+		}
 
 		RunResult result = runIfInstanceof(holder, PlayerVocalClient.class, client -> client.join(request.getPlayerName(), request.isMute(), request.isDeafen()));
 		if (result.getHasRun() && !result.getResult())
@@ -304,7 +332,7 @@ public class RequestManagerV10 extends RequestManager {
 	}
 
 	/**
-	 * Throw a PlayerSpeakEvent.
+	 * Send the audio sample to the players that can hear the transmitter.
 	 * 
 	 * @param holder The holder that contains the connection that received the request and the request itself.
 	 * 
@@ -318,8 +346,51 @@ public class RequestManagerV10 extends RequestManager {
 			return null;
 
 		VocalPlayer player = (VocalPlayer) optPlayer.get();
-		player.setUdpAddress(holder.getEvent().getAddress());
-		EventManager.callEvent(new VocalPlayerSpeakEvent(getServer(), player, request.getData(), request.isMono(), request.isEncoded()));
+		player.setUdpAddress(holder.getAddress());
+		SpeakRoute route = ((VocalServer) getServer()).getRoutingTable().get(player);
+		((VocalAudioConnection) holder.getConnection()).onPlayerSpeak(route, request.getData(), request.isMono(), request.isEncoded());
 		return null;
 	}
+
+	private static class ServerConfiguration {
+		private static final int PLAYER_LENGTH = 4;
+		private static final int MUTE_BY_OFFSET = 4;
+
+		private final long version;
+		private final IVocalPlayer[] players;
+		private final Object[] properties;
+
+		/**
+		 * Creates the properties of a server configuration answer. The mute by status of each player is false and should be updated
+		 * according to the requester.
+		 * 
+		 * @param version The version of the server state.
+		 * @param players The players registered on the server.
+		 */
+		private ServerConfiguration(long version, List<IVocalPlayer> players) {
+			this.version = version;
+			this.players = players.toArray(new IVocalPlayer[players.size()]);
+
+			properties = new Object[1 + this.players.length * PLAYER_LENGTH];
+
+			// Number of players
+			properties[0] = this.players.length;
+
+			for (int i = 0; i < this.players.length; i++) {
+				int offset = 1 + i * PLAYER_LENGTH;
+
+				// Player's name
+				properties[offset] = this.players[i].getName();
+
+				// Player's mute status
+				properties[offset + 1] = this.players[i].isMute();
+
+				// Player's deafen status
+				properties[offset + 2] = this.players[i].isDeafen();
+
+				// Player's mute by status
+				properties[offset + 3] = false;
+			}
+		}
+	}
 }
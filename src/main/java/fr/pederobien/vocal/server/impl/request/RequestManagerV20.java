@@ -0,0 +1,286 @@
+package fr.pederobien.vocal.server.impl.request;
+
+import java.net.InetSocketAddress;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import fr.pederobien.vocal.common.impl.VolumeResult;
+import fr.pederobien.vocal.common.interfaces.IVocalMessage;
+import fr.pederobien.vocal.server.impl.PlayerSpeakSample;
+import fr.pederobien.vocal.server.impl.PlayerVocalClient;
+import fr.pederobien.vocal.server.impl.RequestReceivedHolder;
+import fr.pederobien.vocal.server.impl.ServerConfigurationCursor.Page;
+import fr.pederobien.vocal.server.impl.ServerPlayerList;
+import fr.pederobien.vocal.server.impl.SessionRegistry.Claim;
+import fr.pederobien.vocal.server.impl.SpeakRoute;
+import fr.pederobien.vocal.server.impl.VocalAudioConnection;
+import fr.pederobien.vocal.server.impl.VocalPlayer;
+import fr.pederobien.vocal.server.impl.VocalServer;
+import fr.pederobien.vocal.server.interfaces.IPlayerSpeakFrame;
+import fr.pederobien.vocal.server.interfaces.IVocalPlayer;
+import fr.pederobien.vocal.server.interfaces.IVocalServer;
+
+public class RequestManagerV20 extends RequestManager {
+	private RequestManagerV10 control;
+
+	/**
+	 * Creates a request manager associated to version 2.0 in order to modify the given server and answer to remote requests. The
+	 * configuration messages are those of version 1.0 whereas audio samples are sent using the compact frame format of
+	 * {@link AudioFrameV20}. The answer to a server configuration request always contains every player. A client can instead get the
+	 * players page by page with CONFIGURATION frames: the players of each page are sent as if they had just been registered on the
+	 * server. Audio samples sent to the same client within the bundling window of the server are gathered in BUNDLE frames.
+	 * 
+	 * @param server The server to update.
+	 */
+	public RequestManagerV20(IVocalServer server) {
+		super(server, AudioFrameV20.VERSION);
+		control = new RequestManagerV10(server);
+	}
+
+	@Override
+	public IVocalMessage answer(RequestReceivedHolder holder) {
+		// Requests that are not specific to this version are those of version 1.0.
+		if (!getRequests().containsKey(holder.getRequest().getHeader().getIdentifier()))
+			return control.answer(holder);
+
+		return super.answer(holder);
+	}
+
+	@Override
+	public IVocalMessage getCommunicationProtocolVersion() {
+		return control.getCommunicationProtocolVersion();
+	}
+
+	@Override
+	public IVocalMessage setCommunicationProtocolVersion(float version) {
+		return control.setCommunicationProtocolVersion(version);
+	}
+
+	@Override
+	public IVocalMessage onTimeSynchronization(LocalTime time) {
+		return control.onTimeSynchronization(time);
+	}
+
+	@Override
+	public IVocalMessage onServerPlayerAdd(IVocalPlayer player) {
+		return control.onServerPlayerAdd(player);
+	}
+
+	@Override
+	public IVocalMessage onServerPlayerRemove(IVocalPlayer player) {
+		return control.onServerPlayerRemove(player);
+	}
+
+	@Override
+	public IVocalMessage onPlayerNameChange(String oldName, String newName) {
+		return control.onPlayerNameChange(oldName, newName);
+	}
+
+	@Override
+	public IVocalMessage onPlayerMuteChange(IVocalPlayer player) {
+		return control.onPlayerMuteChange(player);
+	}
+
+	@Override
+	public IVocalMessage onPlayerMuteByChange(IVocalPlayer target, IVocalPlayer source) {
+		return control.onPlayerMuteByChange(target, source);
+	}
+
+	@Override
+	public IVocalMessage onPlayerDeafenChange(IVocalPlayer player) {
+		return control.onPlayerDeafenChange(player);
+	}
+
+	@Override
+	public IVocalMessage onPlayerSpeak(LocalTime time, IVocalPlayer transmitter, byte[] data, boolean isMono, boolean isEncoded, VolumeResult volume) {
+		return control.onPlayerSpeak(time, transmitter, data, isMono, isEncoded, volume);
+	}
+
+	@Override
+	public IPlayerSpeakFrame createPlayerSpeakFrame(PlayerSpeakSample sample) {
+		return new PlayerSpeakFrameV20(sample);
+	}
+
+	@Override
+	public int getMaxBundleLength() {
+		return AudioFrameV20.MAX_BUNDLE_LENGTH;
+	}
+
+	@Override
+	public List<byte[]> createBundles(List<byte[]> frames) {
+		List<byte[]> datagrams = new ArrayList<byte[]>();
+		List<byte[]> bundle = new ArrayList<byte[]>();
+		int length = AudioFrameV20.BUNDLE_HEADER_LENGTH;
+
+		for (byte[] frame : frames) {
+			int frameLength = AudioFrameV20.getBundledLength(frame);
+			if (!bundle.isEmpty() && (length + frameLength > AudioFrameV20.MAX_BUNDLE_LENGTH || bundle.size() == AudioFrameV20.MAX_BUNDLE_COUNT)) {
+				datagrams.add(createDatagram(bundle));
+				bundle.clear();
+				length = AudioFrameV20.BUNDLE_HEADER_LENGTH;
+			}
+
+			bundle.add(frame);
+			length += frameLength;
+		}
+
+		if (!bundle.isEmpty())
+			datagrams.add(createDatagram(bundle));
+		return datagrams;
+	}
+
+	@Override
+	public void answer(VocalAudioConnection connection, byte[] buffer, InetSocketAddress address) {
+		switch (AudioFrameV20.getType(buffer)) {
+		case AudioFrameV20.SESSION:
+			setSession(connection, buffer, address);
+			break;
+		case AudioFrameV20.PLAYER_SPEAK_INFO:
+			setPlayerSpeak(connection, buffer, address);
+			break;
+		case AudioFrameV20.CONFIGURATION:
+			getServerConfiguration(connection, buffer, address);
+			break;
+		case AudioFrameV20.SESSION_ACK:
+			setSessionAcknowledgement(buffer, address);
+			break;
+		case AudioFrameV20.RESUME:
+			setResume(connection, buffer, address);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Sends to the remote the next page of players of the server configuration over its TCP connection, then answers with the cursor
+	 * of the following page. The frame is only accepted from the audio address of the player.
+	 * 
+	 * @param connection The connection that has received the frame.
+	 * @param buffer     The frame sent by the remote.
+	 * @param address    The address of the remote.
+	 */
+	private void getServerConfiguration(VocalAudioConnection connection, byte[] buffer, InetSocketAddress address) {
+		int session = AudioFrameV20.getSession(buffer);
+		long cursor = AudioFrameV20.getCursor(buffer);
+		IVocalPlayer player = ((ServerPlayerList) getServer().getPlayers()).get(session).orElse(null);
+		if (cursor < 0 || player == null || !address.equals(player.getUdpAddress()))
+			return;
+
+		Optional<PlayerVocalClient> optClient = ((VocalServer) getServer()).getClients().get(player.getName());
+		if (!optClient.isPresent() || optClient.get().getPlayer() != player)
+			return;
+
+		Optional<Page> optPage = optClient.get().getConfigurationCursor().next(cursor);
+		if (optPage.isPresent())
+			connection.send(AudioFrameV20.createConfiguration(session, optPage.get().getNext(), optPage.get().getCount(), optPage.get().getStreamed(), optPage.get().isLast()), address);
+	}
+
+	/**
+	 * Send to the remote a session identifier and the associated player name. If the frame does not contain a session identifier, the
+	 * player is found by name and its audio address is bound to the address of the remote. A player whose the audio address is already
+	 * bound is only moved to another address if the frame contains the session token of the player. Otherwise, the frame is only
+	 * answered if it has been sent from the audio address of the player. The answer contains the token to use in order to resume the
+	 * session of the player until the remote acknowledges it.
+	 * 
+	 * @param connection The connection that has received the frame.
+	 * @param buffer     The frame sent by the remote.
+	 * @param address    The address of the remote.
+	 */
+	private void setSession(VocalAudioConnection connection, byte[] buffer, InetSocketAddress address) {
+		int session = AudioFrameV20.getSession(buffer);
+		Optional<IVocalPlayer> optPlayer;
+
+		if (session == AudioFrameV20.NO_SESSION) {
+			optPlayer = getServer().getPlayers().get(AudioFrameV20.getName(buffer));
+
+			// The audio address must belong to the host that has joined the server.
+			if (!optPlayer.isPresent() || !optPlayer.get().getTcpAddress().getAddress().equals(address.getAddress()))
+				return;
+
+			// Another remote of the same host cannot take the place of the remote already bound without the session token.
+			VocalPlayer player = (VocalPlayer) optPlayer.get();
+			InetSocketAddress bound = player.getUdpAddress();
+			if (bound != null && !bound.equals(address) && !player.isSessionToken(AudioFrameV20.getToken(buffer)))
+				return;
+
+			player.setUdpAddress(address);
+		} else {
+			// Only the remote bound to the player can get its name, so that players cannot be enumerated.
+			optPlayer = ((ServerPlayerList) getServer().getPlayers()).get(session).filter(player -> address.equals(player.getUdpAddress()));
+		}
+
+		if (!optPlayer.isPresent())
+			return;
+
+		// The token is sent again until the remote acknowledges it, in case a previous answer has been lost.
+		VocalPlayer player = (VocalPlayer) optPlayer.get();
+		connection.send(AudioFrameV20.createSession(player.getId(), player.getName(), player.getUnacknowledgedSessionToken().orElse(null)), address);
+	}
+
+	/**
+	 * Stops sending the session token to the remote once it has received it. The frame is only accepted from the audio address of the
+	 * player.
+	 * 
+	 * @param buffer  The frame sent by the remote.
+	 * @param address The address of the remote.
+	 */
+	private void setSessionAcknowledgement(byte[] buffer, InetSocketAddress address) {
+		IVocalPlayer player = ((ServerPlayerList) getServer().getPlayers()).get(AudioFrameV20.getSession(buffer)).orElse(null);
+		if (player != null && address.equals(player.getUdpAddress()))
+			((VocalPlayer) player).acknowledgeSessionToken(AudioFrameV20.getToken(buffer));
+	}
+
+	/**
+	 * Claims the suspended session associated to the token of the frame for the host of the remote, and answers with the session
+	 * identifier and the name of the player. The remote then joins the server with this name from the same host in order to get the
+	 * player back. The answer also tells whether the remote will receive the changes it has missed or has to request the whole server
+	 * configuration. Nothing is answered if no session is associated to the token.
+	 * 
+	 * @param connection The connection that has received the frame.
+	 * @param buffer     The frame sent by the remote.
+	 * @param address    The address of the remote.
+	 */
+	private void setResume(VocalAudioConnection connection, byte[] buffer, InetSocketAddress address) {
+		Optional<Claim> optClaim = ((VocalServer) getServer()).getSessions().claim(AudioFrameV20.getToken(buffer), address);
+		if (!optClaim.isPresent())
+			return;
+
+		IVocalPlayer player = optClaim.get().getPlayer();
+		connection.send(AudioFrameV20.createResume(((VocalPlayer) player).getId(), player.getName(), optClaim.get().isFull()), address);
+	}
+
+	/**
+	 * Send the audio sample to the players that can hear the transmitter.
+	 * 
+	 * @param connection The connection that has received the frame.
+	 * @param buffer     The frame sent by the remote.
+	 * @param address    The address of the remote.
+	 */
+	private void setPlayerSpeak(VocalAudioConnection connection, byte[] buffer, InetSocketAddress address) {
+		PlayerSpeakInfoV20 frame = new PlayerSpeakInfoV20();
+		if (!frame.decode(buffer))
+			return;
+
+		IVocalPlayer player = ((ServerPlayerList) getServer().getPlayers()).get(frame.getSession()).orElse(null);
+		if (player == null || !address.equals(player.getUdpAddress()))
+			return;
+
+		SpeakRoute route = ((VocalServer) getServer()).getRoutingTable().get(player);
+		// The sequence and the timestamp of the transmitter are forwarded so that receivers can detect losses and reorder samples.
+		connection.onPlayerSpeak(route, frame.copyData(), frame.isMono(), frame.isEncoded(), frame.getSequence(), frame.getTimestamp());
+	}
+
+	/**
+	 * Creates the datagram that contains the given frames. A single frame is sent as is, without the overhead of a bundle.
+	 * 
+	 * @param frames The frames to gather.
+	 * 
+	 * @return The bytes of the datagram.
+	 */
+	private byte[] createDatagram(List<byte[]> frames) {
+		return frames.size() == 1 ? frames.get(0) : AudioFrameV20.createBundle(frames);
+	}
+}
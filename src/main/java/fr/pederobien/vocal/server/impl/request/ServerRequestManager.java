@@ -1,15 +1,20 @@
 package fr.pederobien.vocal.server.impl.request;
 
+import java.net.InetSocketAddress;
 import java.time.LocalTime;
 import java.util.NavigableMap;
+import java.util.Optional;
 import java.util.TreeMap;
 import java.util.function.Function;
 
 import fr.pederobien.vocal.common.impl.VocalErrorCode;
 import fr.pederobien.vocal.common.impl.VolumeResult;
 import fr.pederobien.vocal.common.interfaces.IVocalMessage;
+import fr.pederobien.vocal.server.impl.PlayerSpeakSample;
 import fr.pederobien.vocal.server.impl.RequestReceivedHolder;
+import fr.pederobien.vocal.server.impl.VocalAudioConnection;
 import fr.pederobien.vocal.server.impl.VocalServerMessageFactory;
+import fr.pederobien.vocal.server.interfaces.IPlayerSpeakFrame;
 import fr.pederobien.vocal.server.interfaces.IRequestManager;
 import fr.pederobien.vocal.server.interfaces.IServerRequestManager;
 import fr.pederobien.vocal.server.interfaces.IVocalPlayer;
@@ -26,6 +31,7 @@ public class ServerRequestManager implements IServerRequestManager {
 	public ServerRequestManager(IVocalServer server) {
 		managers = new TreeMap<Float, IRequestManager>();
 		register(new RequestManagerV10(server));
+		register(new RequestManagerV20(server));
 	}
 
 	@Override
@@ -38,6 +44,11 @@ public class ServerRequestManager implements IServerRequestManager {
 		return managers.containsKey(version);
 	}
 
+	@Override
+	public Optional<IRequestManager> getRequestManager(float version) {
+		return Optional.ofNullable(managers.get(version));
+	}
+
 	@Override
 	public IVocalMessage answer(RequestReceivedHolder holder) {
 		IRequestManager manager = managers.get(holder.getRequest().getHeader().getVersion());
@@ -48,6 +59,14 @@ public class ServerRequestManager implements IServerRequestManager {
 		return manager.answer(holder);
 	}
 
+	@Override
+	public void answer(VocalAudioConnection connection, byte[] buffer, InetSocketAddress address) {
+		// Only the frame format of version 2.0 is not a vocal message.
+		IRequestManager manager = managers.get(AudioFrameV20.VERSION);
+		if (manager != null)
+			manager.answer(connection, buffer, address);
+	}
+
 	@Override
 	public IVocalMessage getCommunicationProtocolVersion() {
 		return findManagerAndApply(1.0f, manager -> manager.getCommunicationProtocolVersion());
@@ -98,6 +117,11 @@ public class ServerRequestManager implements IServerRequestManager {
 		return findManagerAndApply(version, manager -> manager.onPlayerSpeak(time, transmitter, data, isMono, isEncoded, volume));
 	}
 
+	@Override
+	public IPlayerSpeakFrame createPlayerSpeakFrame(float version, PlayerSpeakSample sample) {
+		return findManagerAndApply(version, manager -> manager.createPlayerSpeakFrame(sample));
+	}
+
 	private void register(IRequestManager manager) {
 		managers.put(manager.getVersion(), manager);
 	}
@@ -110,7 +134,7 @@ public class ServerRequestManager implements IServerRequestManager {
 	 * 
 	 * @return The created message.
 	 */
-	private IVocalMessage findManagerAndApply(float version, Function<IRequestManager, IVocalMessage> function) {
+	private <T> T findManagerAndApply(float version, Function<IRequestManager, T> function) {
 		IRequestManager manager = managers.get(version);
 		if (manager == null)
 			return null;
@@ -0,0 +1,19 @@
+package fr.pederobien.vocal.server.interfaces;
+
+import fr.pederobien.vocal.common.impl.VolumeResult;
+
+public interface IAudioRouter {
+
+	/**
+	 * Get the sound volume with which a receiver hears a transmitter. This method is called for each player that can hear the
+	 * transmitter, except the transmitter himself, for each audio sample, directly from the threads that route the sample. It should
+	 * not block.
+	 * 
+	 * @param transmitter The speaking player.
+	 * @param receiver    The player that can hear the transmitter.
+	 * @param volume      The default sound volume according to the server speak behavior, null if there is no default volume.
+	 * 
+	 * @return The sound volume of the sample for the receiver, null or {@link VolumeResult#NONE} to not send the sample.
+	 */
+	VolumeResult getVolume(IVocalPlayer transmitter, IVocalPlayer receiver, VolumeResult volume);
+}
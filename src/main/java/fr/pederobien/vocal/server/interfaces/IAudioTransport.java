@@ -0,0 +1,34 @@
+package fr.pederobien.vocal.server.interfaces;
+
+import java.net.InetSocketAddress;
+import java.util.function.BiConsumer;
+
+public interface IAudioTransport {
+
+	/**
+	 * Starts receiving audio samples from remotes. Each received datagram is given to the receiver, from the thread of this transport.
+	 * 
+	 * @param receiver The code to run when a datagram is received, with the bytes of the datagram and the address of the remote.
+	 * 
+	 * @throws IllegalStateException If the transport cannot receive audio samples, for instance if the port is already in use.
+	 */
+	void open(BiConsumer<byte[], InetSocketAddress> receiver);
+
+	/**
+	 * Stops receiving and sending audio samples.
+	 */
+	void close();
+
+	/**
+	 * @return True if this transport is opened, false otherwise.
+	 */
+	boolean isOpened();
+
+	/**
+	 * Send bytes to a remote. This method should not block, if the bytes cannot be sent immediately they may be dropped.
+	 * 
+	 * @param bytes   The bytes to send.
+	 * @param address The address of the remote.
+	 */
+	void send(byte[] bytes, InetSocketAddress address);
+}
@@ -0,0 +1,15 @@
+package fr.pederobien.vocal.server.interfaces;
+
+import fr.pederobien.vocal.common.impl.VolumeResult;
+
+public interface IPlayerSpeakFrame {
+
+	/**
+	 * Get the bytes to send to a receiver in order to play an audio sample with the given volume.
+	 * 
+	 * @param volume The different sound volume of the sample for the receiver.
+	 * 
+	 * @return The bytes array to send to the receiver.
+	 */
+	byte[] getBytes(VolumeResult volume);
+}
@@ -0,0 +1,41 @@
+package fr.pederobien.vocal.server.interfaces;
+
+public interface IPosition {
+
+	/**
+	 * @return The X coordinate of this position.
+	 */
+	double getX();
+
+	/**
+	 * @return The Y coordinate of this position, it corresponds to the height.
+	 */
+	double getY();
+
+	/**
+	 * @return The Z coordinate of this position.
+	 */
+	double getZ();
+
+	/**
+	 * @return The yaw angle, in radian, of this position. A yaw equals to 0 means the player is looking in the Z axis direction, the X
+	 *         axis direction being on his right.
+	 */
+	double getYaw();
+
+	/**
+	 * @return The pitch angle, in radian, of this position.
+	 */
+	double getPitch();
+
+	/**
+	 * Update the coordinates and the orientation of this position.
+	 * 
+	 * @param x     The new X coordinate.
+	 * @param y     The new Y coordinate.
+	 * @param z     The new Z coordinate.
+	 * @param yaw   The new yaw angle, in radian.
+	 * @param pitch The new pitch angle, in radian.
+	 */
+	void update(double x, double y, double z, double yaw, double pitch);
+}
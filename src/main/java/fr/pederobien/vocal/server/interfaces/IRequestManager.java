@@ -1,10 +1,14 @@
 package fr.pederobien.vocal.server.interfaces;
 
+import java.net.InetSocketAddress;
 import java.time.LocalTime;
+import java.util.List;
 
 import fr.pederobien.vocal.common.impl.VolumeResult;
 import fr.pederobien.vocal.common.interfaces.IVocalMessage;
+import fr.pederobien.vocal.server.impl.PlayerSpeakSample;
 import fr.pederobien.vocal.server.impl.RequestReceivedHolder;
+import fr.pederobien.vocal.server.impl.VocalAudioConnection;
 
 public interface IRequestManager {
 
@@ -114,4 +118,38 @@ public interface IRequestManager {
 	 * @return The message to send to the remote in order to play an audio sample.
 	 */
 	IVocalMessage onPlayerSpeak(LocalTime time, IVocalPlayer transmitter, byte[] data, boolean isMono, boolean isEncoded, VolumeResult volume);
+
+	/**
+	 * Creates a frame in order to send an audio sample to several receivers.
+	 * 
+	 * @param sample The sample that contains the properties shared by every receiver.
+	 * 
+	 * @return The frame that gives the bytes to send to each receiver.
+	 */
+	IPlayerSpeakFrame createPlayerSpeakFrame(PlayerSpeakSample sample);
+
+	/**
+	 * Performs server update according to an audio frame that is not a vocal message.
+	 * 
+	 * @param connection The connection that has received the frame.
+	 * @param buffer     The bytes array received from the remote.
+	 * @param address    The address of the remote.
+	 */
+	void answer(VocalAudioConnection connection, byte[] buffer, InetSocketAddress address);
+
+	/**
+	 * @return The maximum length of a datagram that gathers several audio frames for the same receiver, 0 if this version of the
+	 *         communication protocol does not support bundles.
+	 */
+	int getMaxBundleLength();
+
+	/**
+	 * Gathers several audio frames to send to the same receiver in as few datagrams as possible. Each datagram is not longer than
+	 * {@link #getMaxBundleLength()}.
+	 * 
+	 * @param frames The frames created by this requests manager to gather, in the order they should be played.
+	 * 
+	 * @return The datagrams to send, the given frames if this version of the communication protocol does not support bundles.
+	 */
+	List<byte[]> createBundles(List<byte[]> frames);
 }
@@ -1,10 +1,14 @@
 package fr.pederobien.vocal.server.interfaces;
 
+import java.net.InetSocketAddress;
 import java.time.LocalTime;
+import java.util.Optional;
 
 import fr.pederobien.vocal.common.impl.VolumeResult;
 import fr.pederobien.vocal.common.interfaces.IVocalMessage;
+import fr.pederobien.vocal.server.impl.PlayerSpeakSample;
 import fr.pederobien.vocal.server.impl.RequestReceivedHolder;
+import fr.pederobien.vocal.server.impl.VocalAudioConnection;
 
 public interface IServerRequestManager {
 
@@ -22,6 +26,15 @@ public interface IServerRequestManager {
 	 */
 	boolean isSupported(float version);
 
+	/**
+	 * Get the requests manager associated to the given version of the communication protocol.
+	 * 
+	 * @param version The version of the communication protocol.
+	 * 
+	 * @return An optional that contains the requests manager if the version is supported, an empty optional otherwise.
+	 */
+	Optional<IRequestManager> getRequestManager(float version);
+
 	/**
 	 * Performs server configuration update according to the given request.
 	 * 
@@ -31,6 +44,15 @@ public interface IServerRequestManager {
 	 */
 	IVocalMessage answer(RequestReceivedHolder holder);
 
+	/**
+	 * Performs server update according to an audio frame that is not a vocal message.
+	 * 
+	 * @param connection The connection that has received the frame.
+	 * @param buffer     The bytes array received from the remote.
+	 * @param address    The address of the remote.
+	 */
+	void answer(VocalAudioConnection connection, byte[] buffer, InetSocketAddress address);
+
 	/**
 	 * Creates a message in order to get the latest version of the communication protocol supported by the remote.
 	 * 
@@ -133,4 +155,14 @@ public interface IServerRequestManager {
 	 * @return The message to send to the remote in order to play an audio sample.
 	 */
 	IVocalMessage onPlayerSpeak(float version, LocalTime time, IVocalPlayer transmitter, byte[] data, boolean isMono, boolean isEncoded, VolumeResult volume);
+
+	/**
+	 * Creates a frame in order to send an audio sample to several receivers.
+	 * 
+	 * @param version The protocol version to use to create the frame.
+	 * @param sample  The sample that contains the properties shared by every receiver.
+	 * 
+	 * @return The frame that gives the bytes to send to each receiver.
+	 */
+	IPlayerSpeakFrame createPlayerSpeakFrame(float version, PlayerSpeakSample sample);
 }
@@ -3,6 +3,8 @@ package fr.pederobien.vocal.server.interfaces;
 import java.net.InetSocketAddress;
 import java.util.stream.Stream;
 
+import fr.pederobien.vocal.server.impl.SpeakBehavior;
+
 public interface IVocalPlayer {
 
 	/**
@@ -68,6 +70,11 @@ public interface IVocalPlayer {
 	 */
 	public void setDeafen(boolean isDeafen);
 
+	/**
+	 * @return The position of this player in the game, used when the server speak behavior is {@link SpeakBehavior#PROXIMITY}.
+	 */
+	IPosition getPosition();
+
 	/**
 	 * @return The address used for the TCP communication.
 	 */
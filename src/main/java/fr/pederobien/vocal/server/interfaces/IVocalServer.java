@@ -1,5 +1,6 @@
 package fr.pederobien.vocal.server.interfaces;
 
+import fr.pederobien.vocal.server.impl.ProximityAttenuation;
 import fr.pederobien.vocal.server.impl.SpeakBehavior;
 
 public interface IVocalServer {
@@ -14,13 +15,22 @@ public interface IVocalServer {
 	 */
 	SpeakBehavior getSpeakBehavior();
 
+	/**
+	 * @return The attenuation used to compute the volume of a receiver when the speak behavior is {@link SpeakBehavior#PROXIMITY}.
+	 */
+	ProximityAttenuation getProximityAttenuation();
+
 	/**
 	 * Open this server in order to accept players.
+	 * 
+	 * @throws IllegalStateException If the audio transport cannot be opened, the server then remains closed, or if the server has
+	 *                               already been closed.
 	 */
 	void open();
 
 	/**
-	 * Close this server. Each players will be kicked.
+	 * Close this server. Each players will be kicked. The resources of the server are released, a closed server cannot be opened
+	 * again.
 	 */
 	void close();
 
@@ -43,4 +53,17 @@ public interface IVocalServer {
 	 * @return The manager responsible to create messages to send to the remote.
 	 */
 	IServerRequestManager getRequestManager();
+
+	/**
+	 * @return The router that computes the sound volume of a receiver when a player is speaking, null if not defined.
+	 */
+	IAudioRouter getAudioRouter();
+
+	/**
+	 * Set the router that computes the sound volume of a receiver when a player is speaking. When defined, the server asks the router
+	 * directly and no VocalPlayerSpeakEvent is thrown. Set it to null in order to throw the event again for each audio sample.
+	 * 
+	 * @param router The router to use, or null.
+	 */
+	void setAudioRouter(IAudioRouter router);
 }
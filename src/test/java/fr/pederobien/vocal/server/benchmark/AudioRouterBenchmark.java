@@ -0,0 +1,107 @@
+package fr.pederobien.vocal.server.benchmark;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import fr.pederobien.vocal.common.impl.VolumeResult;
+import fr.pederobien.vocal.server.impl.SpeakBehavior;
+import fr.pederobien.vocal.server.impl.SpeakRoute;
+import fr.pederobien.vocal.server.impl.VocalAudioConnection;
+import fr.pederobien.vocal.server.impl.VocalPlayer;
+import fr.pederobien.vocal.server.impl.VocalServer;
+import fr.pederobien.vocal.server.interfaces.IAudioTransport;
+import fr.pederobien.vocal.server.interfaces.IVocalPlayer;
+
+public class AudioRouterBenchmark {
+	private static final int WARMUP = 2000, SAMPLES = 5000;
+
+	/**
+	 * Measures the time needed to route one audio sample to every player of a room, either by throwing a speak event or by asking an
+	 * audio router. The sample is routed until it is given to the audio transport, which drops it.
+	 * 
+	 * @param args The number of players of each room, 50, 200 and 1000 by default.
+	 */
+	public static void main(String[] args) throws Exception {
+		int[] sizes = args.length == 0 ? new int[] { 50, 200, 1000 } : new int[args.length];
+		for (int i = 0; i < args.length; i++)
+			sizes[i] = Integer.parseInt(args[i]);
+
+		System.out.println("players\tevent (us/sample)\trouter (us/sample)");
+		for (int size : sizes) {
+			double event = run(size, false);
+			double router = run(size, true);
+			System.out.println(String.format("%s\t%.1f\t%.1f", size, event, router));
+		}
+		System.exit(0);
+	}
+
+	private static double run(int size, boolean withRouter) throws Exception {
+		VocalServer server = new VocalServer("Benchmark", 0, SpeakBehavior.TO_EVERYONE);
+		if (withRouter)
+			server.setAudioRouter((transmitter, receiver, volume) -> volume);
+
+		CountingTransport transport = new CountingTransport();
+		VocalAudioConnection connection = new VocalAudioConnection(server, transport);
+
+		Map<String, IVocalPlayer> players = new LinkedHashMap<String, IVocalPlayer>();
+		Map<IVocalPlayer, VolumeResult> volumes = new HashMap<IVocalPlayer, VolumeResult>();
+		for (int i = 0; i < size; i++) {
+			VocalPlayer player = new VocalPlayer(server, "Player " + i, false, false);
+			player.setRequestManager(server.getRequestManager().getRequestManager(2.0f).get());
+			player.setUdpAddress(new InetSocketAddress("127.0.0.1", 10000 + i));
+			players.put(player.getName(), player);
+			if (i > 0)
+				volumes.put(player, new VolumeResult(1.0));
+		}
+
+		IVocalPlayer transmitter = players.get("Player 0");
+		SpeakRoute route = new SpeakRoute(transmitter, 0, 0, players, volumes);
+		byte[] data = new byte[160];
+
+		route(connection, transport, route, data, WARMUP, size - 1);
+		long start = System.nanoTime();
+		route(connection, transport, route, data, SAMPLES, size - 1);
+		return (System.nanoTime() - start) / 1000.0 / SAMPLES;
+	}
+
+	private static void route(VocalAudioConnection connection, CountingTransport transport, SpeakRoute route, byte[] data, int samples, int receivers)
+			throws InterruptedException {
+		long base = transport.sent.get();
+		for (int i = 0; i < samples; i++) {
+			connection.onPlayerSpeak(route, data, true, true);
+
+			// Keeping at most 16 samples in each send queue so that no sample is dropped.
+			while (transport.sent.get() < base + (i - 16L) * receivers)
+				Thread.onSpinWait();
+		}
+
+		while (transport.sent.get() < base + (long) samples * receivers)
+			Thread.sleep(1);
+	}
+
+	private static class CountingTransport implements IAudioTransport {
+		private AtomicLong sent = new AtomicLong();
+
+		@Override
+		public void open(BiConsumer<byte[], InetSocketAddress> receiver) {
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public boolean isOpened() {
+			return true;
+		}
+
+		@Override
+		public void send(byte[] bytes, InetSocketAddress address) {
+			sent.incrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package fr.pederobien.vocal.server.benchmark;
+
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.pederobien.vocal.server.impl.AudioTransportType;
+import fr.pederobien.vocal.server.interfaces.IAudioTransport;
+
+public class AudioTransportBenchmark {
+	private static final int DURATION = 2000, REMOTES = 16, LENGTH = 200;
+
+	/**
+	 * Measures the number of datagrams per second received and sent by an audio transport. Several remotes send datagrams of 200 bytes
+	 * to the transport as fast as possible from one thread, then the transport sends datagrams of the same length to a remote that
+	 * does not read them. The UDP_SERVER transport needs the communication library in the class path.
+	 *
+	 * @param args The names of the transports to measure, NIO, NIO_REUSEPORT and UDP_SERVER by default.
+	 */
+	public static void main(String[] args) throws Exception {
+		String[] types = args.length == 0 ? new String[] { "NIO", "NIO_REUSEPORT", "UDP_SERVER" } : args;
+
+		System.out.println("transport\tremotes sent (pps)\treceived (pps)\tloss (%)\tsent (pps)");
+		for (String type : types)
+			run(AudioTransportType.valueOf(type));
+		System.exit(0);
+	}
+
+	private static void run(AudioTransportType type) throws Exception {
+		int port = getFreePort();
+		AtomicLong received = new AtomicLong(0);
+		IAudioTransport transport = type.create("Benchmark", port);
+		transport.open((bytes, address) -> received.incrementAndGet());
+
+		// Reception
+		InetSocketAddress server = new InetSocketAddress("127.0.0.1", port);
+		DatagramChannel[] remotes = new DatagramChannel[REMOTES];
+		for (int i = 0; i < REMOTES; i++)
+			remotes[i] = DatagramChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(LENGTH);
+		long sent = 0;
+		long end = System.nanoTime() + DURATION * 1000000L;
+		while (System.nanoTime() < end) {
+			buffer.clear();
+			remotes[(int) (sent % REMOTES)].send(buffer, server);
+			sent++;
+		}
+
+		// Let the receiving threads read the datagrams still in the socket buffers.
+		Thread.sleep(200);
+		long count = received.get();
+
+		// Sending
+		DatagramChannel sink = DatagramChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+		InetSocketAddress address = (InetSocketAddress) sink.getLocalAddress();
+		byte[] bytes = new byte[LENGTH];
+		long calls = 0;
+		end = System.nanoTime() + DURATION * 1000000L;
+		while (System.nanoTime() < end) {
+			transport.send(bytes, address);
+			calls++;
+		}
+
+		transport.close();
+		sink.close();
+		for (DatagramChannel remote : remotes)
+			remote.close();
+
+		double seconds = DURATION / 1000.0;
+		double loss = sent == 0 ? 0 : 100.0 * (sent - count) / sent;
+		System.out.println(String.format("%s\t%.0f\t%.0f\t%.1f\t%.0f", type, sent / seconds, count / seconds, loss, calls / seconds));
+	}
+
+	private static int getFreePort() throws Exception {
+		try (DatagramSocket socket = new DatagramSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+}
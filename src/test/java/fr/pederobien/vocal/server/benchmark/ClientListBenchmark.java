@@ -0,0 +1,111 @@
+package fr.pederobien.vocal.server.benchmark;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.pederobien.communication.interfaces.ITcpConnection;
+import fr.pederobien.utils.event.EventManager;
+import fr.pederobien.vocal.server.event.VocalClientDisconnectPostEvent;
+import fr.pederobien.vocal.server.impl.AudioTransportType;
+import fr.pederobien.vocal.server.impl.ClientList;
+import fr.pederobien.vocal.server.impl.PlayerVocalClient;
+import fr.pederobien.vocal.server.impl.SpeakBehavior;
+import fr.pederobien.vocal.server.impl.VocalPlayer;
+import fr.pederobien.vocal.server.impl.VocalServer;
+
+public class ClientListBenchmark {
+	private static final int DURATION = 2000;
+
+	/**
+	 * Measures the number of lookups by player name and of full iterations per second on the clients list of a server while another
+	 * thread makes clients join and leave the server as fast as possible. Connections are never opened: each client is given a
+	 * connection that ignores the requests sent to the remote.
+	 *
+	 * @param args The number of joined clients, 100, 1000 and 5000 by default.
+	 */
+	public static void main(String[] args) throws Exception {
+		int[] sizes = args.length == 0 ? new int[] { 100, 1000, 5000 } : new int[args.length];
+		for (int i = 0; i < args.length; i++)
+			sizes[i] = Integer.parseInt(args[i]);
+
+		System.out.println("clients\tchurn (joins+leaves/s)\tlookups (ops/s)\titerations (passes/s)");
+		for (int size : sizes)
+			run(size);
+		System.exit(0);
+	}
+
+	private static void run(int size) throws Exception {
+		VocalServer server = new VocalServer("Benchmark", 0, SpeakBehavior.TO_EVERYONE, 1, AudioTransportType.NIO);
+		ClientList clients = server.getClients();
+		for (int i = 0; i < size; i++)
+			clients.createClient(createConnection()).join("Player_" + i, false, false);
+
+		AtomicLong churn = new AtomicLong(0);
+		Thread churner = new Thread(() -> {
+			long i = 0;
+			while (!Thread.currentThread().isInterrupted()) {
+				PlayerVocalClient client = clients.createClient(createConnection());
+				client.join("Churn_" + i++, false, false);
+				EventManager.callEvent(new VocalClientDisconnectPostEvent(client));
+				((VocalPlayer) client.getPlayer()).dispose();
+				churn.incrementAndGet();
+			}
+		}, "Churn");
+		churner.setDaemon(true);
+		churner.start();
+
+		// Lookups of joined players by name.
+		long churnStart = churn.get();
+		long lookups = 0, found = 0;
+		long end = System.nanoTime() + DURATION * 1000000L;
+		while (System.nanoTime() < end) {
+			if (clients.get("Player_" + ThreadLocalRandom.current().nextInt(size)).isPresent())
+				found++;
+			lookups++;
+		}
+
+		// Full iterations over the clients.
+		long passes = 0, visited = 0;
+		end = System.nanoTime() + DURATION * 1000000L;
+		while (System.nanoTime() < end) {
+			for (PlayerVocalClient client : clients)
+				if (client.isJoined())
+					visited++;
+			passes++;
+		}
+		long churnCount = churn.get() - churnStart;
+
+		churner.interrupt();
+		churner.join();
+
+		if (found != lookups || visited < passes * size)
+			throw new IllegalStateException("A joined client has not been found");
+
+		// Each churn operation is one join and one leave, measured during both phases.
+		double seconds = DURATION / 1000.0;
+		System.out.println(String.format("%s\t%.0f\t%.0f\t%.0f", size, churnCount / seconds, lookups / seconds, passes / seconds));
+	}
+
+	private static ITcpConnection createConnection() {
+		return (ITcpConnection) Proxy.newProxyInstance(ITcpConnection.class.getClassLoader(), new Class<?>[] { ITcpConnection.class }, (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "Connection@" + Integer.toHexString(System.identityHashCode(proxy));
+			default:
+				Class<?> type = method.getReturnType();
+				if (type == boolean.class)
+					return false;
+				if (type == int.class)
+					return 0;
+				if (type == long.class)
+					return 0L;
+				return null;
+			}
+		});
+	}
+}
@@ -0,0 +1,84 @@
+package fr.pederobien.vocal.server.benchmark;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.pederobien.vocal.server.impl.AudioTransportType;
+import fr.pederobien.vocal.server.impl.SpeakBehavior;
+import fr.pederobien.vocal.server.impl.VocalServer;
+
+public class HandshakeBenchmark {
+	private static final int CONNECTIONS = 200, READ_TIMEOUT = 10000;
+
+	/**
+	 * Measures the number of connections per second accepted by a server while other connections never answer the handshake. Silent
+	 * connections are opened first and wait for the handshake request of the server without answering it. Then new connections are
+	 * opened and the time until each one has received the handshake request of the server is measured. The communication library
+	 * must be in the class path.
+	 * 
+	 * @param args The numbers of silent connections, 0, 200 and 1000 by default.
+	 */
+	public static void main(String[] args) throws Exception {
+		int[] silents = args.length == 0 ? new int[] { 0, 200, 1000 } : new int[args.length];
+		for (int i = 0; i < args.length; i++)
+			silents[i] = Integer.parseInt(args[i]);
+
+		System.out.println("silent connections\tnew connections\taccepted (connections/s)");
+		for (int silent : silents)
+			run(silent);
+		System.exit(0);
+	}
+
+	private static void run(int silent) throws Exception {
+		int port = getFreePort();
+		VocalServer server = new VocalServer("Benchmark", port, SpeakBehavior.TO_EVERYONE, 1, AudioTransportType.NIO);
+		server.open();
+
+		InetSocketAddress address = new InetSocketAddress("127.0.0.1", port);
+		List<Socket> sockets = new ArrayList<Socket>();
+
+		// The silent connections receive the handshake request and never answer it.
+		for (int i = 0; i < silent; i++)
+			sockets.add(connect(address));
+		for (int i = 0; i < silent; i++)
+			waitRequest(sockets.get(i));
+
+		long start = System.nanoTime();
+		List<Socket> connections = new ArrayList<Socket>();
+		for (int i = 0; i < CONNECTIONS; i++)
+			connections.add(connect(address));
+		for (Socket connection : connections)
+			waitRequest(connection);
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		sockets.addAll(connections);
+		for (Socket socket : sockets)
+			socket.close();
+		server.close();
+
+		System.out.println(String.format("%s\t%s\t%.0f", silent, CONNECTIONS, CONNECTIONS / seconds));
+	}
+
+	private static Socket connect(InetSocketAddress address) throws Exception {
+		Socket socket = new Socket();
+		socket.setSoTimeout(READ_TIMEOUT);
+		socket.connect(address);
+		return socket;
+	}
+
+	private static void waitRequest(Socket socket) throws Exception {
+		InputStream input = socket.getInputStream();
+		if (input.read() < 0)
+			throw new IllegalStateException("The connection has been closed by the server");
+	}
+
+	private static int getFreePort() throws Exception {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package fr.pederobien.vocal.server.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import fr.pederobien.utils.event.EventManager;
+import fr.pederobien.vocal.common.impl.VolumeResult;
+import fr.pederobien.vocal.server.event.VocalServerPlayerAddPostEvent;
+import fr.pederobien.vocal.server.impl.ProximityAttenuation;
+import fr.pederobien.vocal.server.impl.SpeakBehavior;
+import fr.pederobien.vocal.server.impl.VocalPlayer;
+import fr.pederobien.vocal.server.impl.VocalServer;
+import fr.pederobien.vocal.server.interfaces.IVocalPlayer;
+
+public class SpatialGridBenchmark {
+	private static final double WORLD_SIZE = 2000;
+	private static final int WARMUP = 2000, QUERIES = 10000;
+
+	/**
+	 * Measures the time needed to find the receivers in the hearing radius of a transmitter, either by scanning every player or by
+	 * querying the spatial grid of the server. Players are spread uniformly in a square world of 2000 x 2000.
+	 * 
+	 * @param args The number of players, 100, 1000 and 5000 by default.
+	 */
+	public static void main(String[] args) {
+		int[] sizes = args.length == 0 ? new int[] { 100, 1000, 5000 } : new int[args.length];
+		for (int i = 0; i < args.length; i++)
+			sizes[i] = Integer.parseInt(args[i]);
+
+		System.out.println("players\tradius\tcell size\tscan (us/query)\tgrid (us/query)\treceivers");
+		for (int size : sizes) {
+			VocalServer server = new VocalServer("Benchmark", 0, SpeakBehavior.PROXIMITY, 1);
+			List<IVocalPlayer> players = createPlayers(server, size);
+
+			// Default radius, then a smaller radius that rebuilds the grid.
+			run(server, players, VocalServer.DEFAULT_HEARING_RADIUS);
+			server.getProximityAttenuation().setRadius(10);
+			run(server, players, 10);
+		}
+		System.exit(0);
+	}
+
+	private static List<IVocalPlayer> createPlayers(VocalServer server, int size) {
+		Random random = new Random(size);
+		List<IVocalPlayer> players = new ArrayList<IVocalPlayer>();
+		for (int i = 0; i < size; i++) {
+			VocalPlayer player = new VocalPlayer(server, "Player " + i, false, false);
+			player.getPosition().update(random.nextDouble() * WORLD_SIZE, 0, random.nextDouble() * WORLD_SIZE, 0, 0);
+			players.add(player);
+			EventManager.callEvent(new VocalServerPlayerAddPostEvent(server.getPlayers(), player));
+		}
+		return players;
+	}
+
+	private static void run(VocalServer server, List<IVocalPlayer> players, double radius) {
+		ProximityAttenuation attenuation = server.getProximityAttenuation();
+
+		scan(attenuation, players, WARMUP);
+		long start = System.nanoTime();
+		int receivers = scan(attenuation, players, QUERIES);
+		double scan = (System.nanoTime() - start) / 1000.0 / QUERIES;
+
+		query(server, attenuation, players, WARMUP);
+		start = System.nanoTime();
+		int found = query(server, attenuation, players, QUERIES);
+		double grid = (System.nanoTime() - start) / 1000.0 / QUERIES;
+
+		if (found != receivers)
+			throw new IllegalStateException(String.format("The grid found %s receivers instead of %s", found, receivers));
+
+		double cellSize = server.getSpatialGrid().getCellSize();
+		System.out.println(String.format("%s\t%s\t%s\t%.2f\t%.2f\t%.1f", players.size(), radius, cellSize, scan, grid, (double) receivers / QUERIES));
+	}
+
+	private static int scan(ProximityAttenuation attenuation, List<IVocalPlayer> players, int queries) {
+		int receivers = 0;
+		for (int i = 0; i < queries; i++) {
+			IVocalPlayer transmitter = players.get(i % players.size());
+			for (IVocalPlayer receiver : players)
+				if (receiver != transmitter && attenuation.getVolume(transmitter.getPosition(), receiver.getPosition()) != null)
+					receivers++;
+		}
+		return receivers;
+	}
+
+	private static int query(VocalServer server, ProximityAttenuation attenuation, List<IVocalPlayer> players, int queries) {
+		int receivers = 0;
+		for (int i = 0; i < queries; i++) {
+			IVocalPlayer transmitter = players.get(i % players.size());
+			for (IVocalPlayer receiver : server.getSpatialGrid().getCandidates(transmitter.getPosition(), attenuation.getRadius())) {
+				VolumeResult volume = attenuation.getVolume(transmitter.getPosition(), receiver.getPosition());
+				if (receiver != transmitter && volume != null)
+					receivers++;
+			}
+		}
+		return receivers;
+	}
+}
@@ -0,0 +1,92 @@
+package fr.pederobien.vocal.server.impl;
+
+import fr.pederobien.vocal.common.impl.VolumeResult;
+
+public class SpeakerSelectorTest {
+	private static VocalServer server;
+
+	/**
+	 * Checks that the speaker selector forwards the loudest transmitters to a receiver. Each check throws an exception if it fails.
+	 *
+	 * @param args Not used.
+	 */
+	public static void main(String[] args) {
+		server = new VocalServer("Test", 0, SpeakBehavior.TO_EVERYONE, 1, AudioTransportType.NIO);
+
+		louderTransmitterReplacesQuieterOne();
+		louderEncodedTransmitterReplacesQuieterOne();
+		droppedSampleReleasesSlot();
+
+		System.out.println("SpeakerSelectorTest: OK");
+		System.exit(0);
+	}
+
+	private static void louderTransmitterReplacesQuieterOne() {
+		SpeakerSelector selector = createSelector();
+		VocalPlayer receiver = createPlayer("Receiver");
+		VocalPlayer quiet = createPlayer("Quiet");
+		VocalPlayer loud = createPlayer("Loud");
+
+		byte[] data = createPcm(10000);
+		check(selector.accept(createSample(quiet, data, false), receiver, new VolumeResult(0.2)), "The first transmitter should be forwarded");
+		check(selector.accept(createSample(loud, data, false), receiver, new VolumeResult(1.0)), "The louder transmitter should replace the first one");
+		check(!selector.accept(createSample(quiet, data, false), receiver, new VolumeResult(0.2)), "The first transmitter should have lost its slot");
+	}
+
+	private static void louderEncodedTransmitterReplacesQuieterOne() {
+		SpeakerSelector selector = createSelector();
+		VocalPlayer receiver = createPlayer("Receiver");
+		VocalPlayer quiet = createPlayer("Quiet");
+		VocalPlayer loud = createPlayer("Loud");
+
+		// With the same volume for every receiver, only the length of the encoded samples differs.
+		VolumeResult volume = new VolumeResult(1.0);
+		check(selector.accept(createSample(quiet, new byte[20], true), receiver, volume), "The first transmitter should be forwarded");
+		check(selector.accept(createSample(loud, new byte[PlayerSpeakSample.ENCODED_REFERENCE_LENGTH], true), receiver, volume),
+				"The louder encoded transmitter should replace the first one");
+		check(!selector.accept(createSample(quiet, new byte[20], true), receiver, volume), "The first transmitter should have lost its slot");
+	}
+
+	private static void droppedSampleReleasesSlot() {
+		SpeakerSelector selector = createSelector();
+		VocalPlayer receiver = createPlayer("Receiver");
+		VocalPlayer first = createPlayer("First");
+		VocalPlayer second = createPlayer("Second");
+
+		byte[] data = createPcm(10000);
+		PlayerSpeakSample sample = createSample(first, data, false);
+		check(selector.accept(sample, receiver, new VolumeResult(1.0)), "The first transmitter should be forwarded");
+
+		// The sample could not be sent, the slot is given back.
+		selector.release(sample, receiver);
+		check(selector.accept(createSample(second, data, false), receiver, new VolumeResult(0.2)), "The slot should have been released");
+	}
+
+	private static SpeakerSelector createSelector() {
+		SpeakerSelector selector = new SpeakerSelector();
+		selector.setMaxSpeakers(1);
+		return selector;
+	}
+
+	private static VocalPlayer createPlayer(String name) {
+		return new VocalPlayer(server, name, false, false);
+	}
+
+	private static PlayerSpeakSample createSample(VocalPlayer transmitter, byte[] data, boolean isEncoded) {
+		return new PlayerSpeakSample(server, transmitter, data, true, isEncoded, transmitter.nextSequence(), PlayerSpeakSample.currentTime());
+	}
+
+	private static byte[] createPcm(int amplitude) {
+		byte[] data = new byte[960];
+		for (int i = 0; i + 1 < data.length; i += 2) {
+			data[i] = (byte) amplitude;
+			data[i + 1] = (byte) (amplitude >> 8);
+		}
+		return data;
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition)
+			throw new IllegalStateException(message);
+	}
+}